@@ -1,7 +1,90 @@
+import groovy.json.JsonSlurper
+import java.io.DataOutputStream
+
 plugins {
     alias(libs.plugins.android.application)
 }
 
+// Packs assets/sprites/*.json into compact .bin assets read by SpriteLoader (see PackedSprite for the layout)
+abstract class CompileSpritesTask : DefaultTask() {
+    @get:InputDirectory
+    @get:PathSensitive(PathSensitivity.RELATIVE)
+    abstract val sourceDir: DirectoryProperty
+
+    @get:OutputDirectory
+    abstract val outputDir: DirectoryProperty
+
+    @TaskAction
+    fun compile() {
+        val target = outputDir.get().asFile.resolve("sprites")
+        target.deleteRecursively()
+        target.mkdirs()
+
+        val sources = sourceDir.get().asFile.listFiles { file -> file.name.endsWith(".json") } ?: return
+        for (source in sources.sortedBy { it.name }) {
+            val binary = target.resolve(source.name.removeSuffix(".json") + ".bin")
+            DataOutputStream(binary.outputStream().buffered()).use { out -> writeSprite(source, out) }
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun writeSprite(source: File, out: DataOutputStream) {
+        val sprite = JsonSlurper().parse(source) as Map<String, Any?>
+        val dimensions = sprite["dimensions"] as Map<String, Any?>
+        val width = (dimensions["width"] as Number).toInt()
+        val height = (dimensions["height"] as Number).toInt()
+        if (width !in 1..255 || height !in 1..255) throw GradleException("${source.name}: bad dimensions ${width}x$height")
+
+        val shapeList = sprite["shape"] as List<Number>?
+        if (shapeList != null && shapeList.size != height) throw GradleException("${source.name}: shape has ${shapeList.size} rows, expected $height")
+        val shape = if (shapeList != null) IntArray(height) { shapeList[it].toInt() } else IntArray(height) { width }
+        if (shape.any { it !in 0..width }) throw GradleException("${source.name}: shape row wider than sprite")
+        val frames = sprite["frames"] as List<Map<String, Any?>>
+
+        out.writeBytes("HAGS")
+        out.writeByte(1) // PackedSprite.VERSION
+        out.writeByte(width)
+        out.writeByte(height)
+        out.writeShort(maxOf(1, frames.size))
+        shape.forEach { out.writeByte(it) }
+
+        val emptyFrame = mapOf<String, Any?>("duration" to 0, "pixels" to emptyList<Any>())
+        for (frame in frames.ifEmpty { listOf(emptyFrame) }) {
+            val grid = IntArray(width * height)
+            for (pixel in frame["pixels"] as List<Map<String, Any?>>) {
+                val brightness = opacityToBrightness((pixel["opacity"] as Number).toDouble())
+                if (brightness == 0) continue
+                val coords = (pixel["index"] as String).split("-")
+                val row = coords.getOrNull(0)?.toIntOrNull() ?: continue
+                val col = coords.getOrNull(1)?.toIntOrNull() ?: continue
+                if (coords.size != 2 || row !in 0 until height || col !in 0 until width) continue
+                val start = (width - shape[row]) / 2
+                if (col < start || col >= start + shape[row]) throw GradleException("${source.name}: lit pixel $row-$col outside shape")
+                grid[row * width + col] = brightness
+            }
+
+            out.writeShort(((frame["duration"] as Number?)?.toInt() ?: 0).coerceIn(0, 0xFFFF))
+            for (row in 0 until height) {
+                val start = (width - shape[row]) / 2
+                for (col in start until start + shape[row]) out.writeByte(grid[row * width + col])
+            }
+        }
+    }
+
+    // Same mapping as SpriteData.opacityToBrightness
+    private fun opacityToBrightness(opacity: Double): Int {
+        if (opacity <= 0) return 0
+        val scaled = if (opacity <= 1) opacity * 255 else opacity
+        return minOf(255L, Math.round(scaled)).toInt()
+    }
+}
+
+val compiledSpritesDir = layout.buildDirectory.dir("generated/sprites/assets")
+val compileSprites = tasks.register<CompileSpritesTask>("compileSprites") {
+    sourceDir.set(layout.projectDirectory.dir("src/main/assets/sprites"))
+    outputDir.set(compiledSpritesDir)
+}
+
 android {
     namespace = "com.PzmuV1517.ha_glyph"
     compileSdk = 36
@@ -39,19 +122,34 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+
+    sourceSets {
+        getByName("main") {
+            assets.srcDir(compiledSpritesDir.get().asFile)
+        }
+    }
+}
+
+tasks.named("preBuild") {
+    dependsOn(compileSprites)
+}
+
+tasks.withType<Test>().configureEach {
+    dependsOn(compileSprites)
+    systemProperty("haglyph.compiledSpritesDir", compiledSpritesDir.get().asFile.resolve("sprites").absolutePath)
 }
 
 dependencies {
 
+    implementation(project(":core"))
     implementation(libs.appcompat)
     implementation(libs.material)
-    implementation("com.squareup.okhttp3:okhttp:4.12.0")
-    implementation("com.google.code.gson:gson:2.10.1")
     implementation("androidx.recyclerview:recyclerview:1.3.2")
     implementation("androidx.cardview:cardview:1.0.0")
     implementation("androidx.constraintlayout:constraintlayout:2.1.4")
     implementation(files("libs/glyph-matrix-sdk-1.0.aar"))
     testImplementation(libs.junit)
+    testImplementation(testFixtures(project(":core")))
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
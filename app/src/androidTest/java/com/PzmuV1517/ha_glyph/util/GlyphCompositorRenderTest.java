@@ -0,0 +1,89 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.nothing.ketchum.GlyphMatrixFrame;
+import com.nothing.ketchum.GlyphMatrixObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * GlyphCompositor has to produce exactly what the SDK's Bitmap path did for the bundled
+ * sprites, or the toy would look different after the switch. Needs the real Bitmap
+ * implementation, hence an instrumented test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class GlyphCompositorRenderTest {
+    private static final int[] BRIGHTNESSES = {255, 128, 1};
+
+    private Context context;
+    private SpriteLoader spriteLoader;
+    private SpriteData[] sprites;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        spriteLoader = new SpriteLoader(context);
+        sprites = new SpriteData[]{
+                spriteLoader.loadOnSpriteData(),
+                spriteLoader.loadOffSpriteData(),
+                spriteLoader.loadErrorSpriteData()};
+    }
+
+    @Test
+    public void matchesGlyphMatrixFrameForBundledSprites() {
+        GlyphCompositor compositor = new GlyphCompositor(sprites[0].getShape());
+        int[] out = new int[GlyphCompositor.PIXELS];
+        for (int s = 0; s < sprites.length; s++) {
+            SpriteData sprite = sprites[s];
+            for (int frame = 0; frame < sprite.getFrameCount(); frame++) {
+                for (int brightness : BRIGHTNESSES) {
+                    int[] expected = new GlyphMatrixFrame.Builder()
+                            .addTop(object(sprite, frame, brightness))
+                            .build(context)
+                            .render();
+
+                    compositor.clear().addLayer(sprite, frame, brightness).compose(out);
+
+                    assertArrayEquals("sprite " + s + " frame " + frame + " brightness " + brightness, expected, out);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesGlyphMatrixFrameForStackedLayers() {
+        SpriteData icon = sprites[0];
+        SpriteData overlay = sprites[2];
+        int[] expected = new GlyphMatrixFrame.Builder()
+                .addLow(object(icon, 0, 96))
+                .addMid(object(overlay, 0, 255))
+                .build(context)
+                .render();
+
+        int[] out = new GlyphCompositor(icon.getShape())
+                .addLayer(icon, 0, 96)
+                .addLayer(overlay, 0, 255)
+                .compose(new int[GlyphCompositor.PIXELS]);
+
+        assertArrayEquals(expected, out);
+    }
+
+    private GlyphMatrixObject object(SpriteData sprite, int frame, int brightness) {
+        Bitmap bitmap = spriteLoader.toBitmap(sprite, frame);
+        return new GlyphMatrixObject.Builder()
+                .setImageSource(bitmap)
+                .setPosition(0, 0)
+                .setScale(100)
+                .setBrightness(brightness)
+                .build();
+    }
+}
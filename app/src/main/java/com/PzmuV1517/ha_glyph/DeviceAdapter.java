@@ -1,32 +1,48 @@
 package com.PzmuV1517.ha_glyph;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
-import android.util.TypedValue;
-import android.view.Gravity;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.animation.AccelerateInterpolator;
-import android.view.animation.OvershootInterpolator;
-import android.widget.FrameLayout;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.PzmuV1517.ha_glyph.model.EntityStore;
 import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
+/**
+ * Shows rows of an {@link EntityStore}: every row, or the rows of a search result. Nothing
+ * is copied per entity; the shown list is a store plus an optional int[] of its rows.
+ * Changes are diffed on a background thread, except when rows were only appended.
+ */
 public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceViewHolder> {
-    private List<HomeAssistantEntity> originalDevices; // all devices
-    private List<HomeAssistantEntity> filteredDevices; // filtered view
+    // Rebinds only the selection indicator of a row
+    static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private EntityStore allDevices = EntityStore.EMPTY;
+    private boolean showingSearch; // search results shown instead of all devices
+
+    // What is on screen; rows == null means every row of store
+    private EntityStore store = EntityStore.EMPTY;
+    private int[] rows;
+    private int submitGeneration;
+
     private OnDeviceClickListener listener;
     private String selectedEntityId; // currently selected
     private String lastAnimatedSelectedId; // track newly selected to animate once
@@ -35,9 +51,7 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
         void onDeviceClick(HomeAssistantEntity entity);
     }
 
-    public DeviceAdapter(List<HomeAssistantEntity> devices, OnDeviceClickListener listener) {
-        this.originalDevices = new ArrayList<>(devices);
-        this.filteredDevices = new ArrayList<>(devices);
+    public DeviceAdapter(OnDeviceClickListener listener) {
         this.listener = listener;
     }
 
@@ -49,51 +63,179 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
         return new DeviceViewHolder(view);
     }
 
+    @Override
+    public int getItemCount() {
+        return rows != null ? rows.length : store.size();
+    }
+
+    private int rowAt(int position) {
+        return rows != null ? rows[position] : position;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !onlySelection(payloads)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int row = rowAt(position);
+        holder.bindSelection(isSelected(row));
+        maybeAnimateSelection(holder, row);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position) {
-        HomeAssistantEntity entity = filteredDevices.get(position);
-        boolean selected = selectedEntityId != null && selectedEntityId.equals(entity.getEntityId());
-        holder.bind(entity, listener, selected);
-        if (selected && lastAnimatedSelectedId != null && lastAnimatedSelectedId.equals(entity.getEntityId())) {
+        int row = rowAt(position);
+        holder.bind(store, row, listener, isSelected(row));
+        maybeAnimateSelection(holder, row);
+    }
+
+    private boolean isSelected(int row) {
+        return selectedEntityId != null && store.entityIdEquals(row, selectedEntityId);
+    }
+
+    private void maybeAnimateSelection(DeviceViewHolder holder, int row) {
+        if (lastAnimatedSelectedId != null && store.entityIdEquals(row, lastAnimatedSelectedId) && isSelected(row)) {
+            lastAnimatedSelectedId = null; // play once, not on every later rebind
             holder.playSelectionAnimation();
         }
     }
 
     @Override
-    public int getItemCount() {
-        return filteredDevices.size();
+    public void onViewRecycled(@NonNull DeviceViewHolder holder) {
+        holder.particleBurst.cancel();
     }
 
-    public void updateDevices(List<HomeAssistantEntity> newDevices) {
-        this.originalDevices = new ArrayList<>(newDevices);
-        this.filteredDevices = new ArrayList<>(newDevices);
-        notifyDataSetChanged();
+    private static boolean onlySelection(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION) return false;
+        }
+        return true;
     }
 
-    public void filter(String query) {
-        filteredDevices.clear();
-        if (query == null || query.trim().isEmpty()) {
-            filteredDevices.addAll(originalDevices);
-        } else {
-            String q = query.toLowerCase();
-            for (HomeAssistantEntity e : originalDevices) {
-                if (e.getFriendlyName().toLowerCase().contains(q) || e.getEntityId().toLowerCase().contains(q)) {
-                    filteredDevices.add(e);
-                }
-            }
+    /** Replaces the device list; while a search is shown, it waits for the next results. */
+    public void setDevices(EntityStore devices) {
+        allDevices = devices;
+        if (!showingSearch) {
+            submit(devices, null);
         }
-        notifyDataSetChanged();
+    }
+
+    /** All devices, regardless of the search currently shown. */
+    public EntityStore getDevices() {
+        return allDevices;
+    }
+
+    /** Shows ranked rows of {@code devices} in place of the full list; null rows go back to all devices. */
+    public void showSearchResults(EntityStore devices, int[] results) {
+        showingSearch = results != null;
+        submit(showingSearch ? devices : allDevices, results);
+    }
+
+    private void submit(EntityStore newStore, int[] newRows) {
+        final int generation = ++submitGeneration;
+        EntityStore oldStore = store;
+        int[] oldRows = rows;
+        if (newStore == oldStore && newRows == oldRows) return;
+
+        int oldCount = getItemCount();
+        int newCount = newRows != null ? newRows.length : newStore.size();
+        if (oldCount == 0 || newCount == 0) {
+            store = newStore;
+            rows = newRows;
+            if (oldCount > 0) notifyItemRangeRemoved(0, oldCount);
+            if (newCount > 0) notifyItemRangeInserted(0, newCount);
+            return;
+        }
+        if (oldRows == null && newRows == null && newStore.startsWith(oldStore)) {
+            // Streaming: rows were only appended
+            store = newStore;
+            if (newCount > oldCount) notifyItemRangeInserted(oldCount, newCount - oldCount);
+            return;
+        }
+
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = calculate(oldStore, oldRows, newStore, newRows);
+            mainHandler.post(() -> {
+                if (generation != submitGeneration) return;
+                store = newStore;
+                rows = newRows;
+                result.dispatchUpdatesTo(DeviceAdapter.this);
+            });
+        });
     }
 
     public void setSelectedEntityId(String id) {
-        if (id == null || (selectedEntityId != null && selectedEntityId.equals(id))) {
+        String previous = selectedEntityId;
+        if (id == null || id.equals(previous)) {
             selectedEntityId = id;
             lastAnimatedSelectedId = null;
         } else {
             selectedEntityId = id;
             lastAnimatedSelectedId = id; // animate this selection
         }
-        notifyDataSetChanged();
+        dispatchSelectionChange(store, rows, previous, id, new AdapterListUpdateCallback(this));
+    }
+
+    /** Notifies just the rows that lost and gained the selection; null rows means all rows of store. */
+    static void dispatchSelectionChange(EntityStore store, int[] rows, String previousId, String newId,
+                                        ListUpdateCallback callback) {
+        if (Objects.equals(previousId, newId)) return;
+        int count = rows != null ? rows.length : store.size();
+        for (int i = 0; i < count; i++) {
+            int row = rows != null ? rows[i] : i;
+            if (store.entityIdEquals(row, previousId) || store.entityIdEquals(row, newId)) {
+                callback.onChanged(i, 1, PAYLOAD_SELECTION);
+            }
+        }
+    }
+
+    /** The diff between two row sets, as submit() computes it; null rows means all rows of the store. */
+    static DiffUtil.DiffResult calculate(EntityStore oldStore, int[] oldRows, EntityStore newStore, int[] newRows) {
+        return DiffUtil.calculateDiff(new RowDiff(oldStore, oldRows, newStore, newRows));
+    }
+
+    /** Same entity_id is the same row; state or name changes are content changes. */
+    static class RowDiff extends DiffUtil.Callback {
+        private final EntityStore oldStore;
+        private final int[] oldRows;
+        private final EntityStore newStore;
+        private final int[] newRows;
+
+        RowDiff(EntityStore oldStore, int[] oldRows, EntityStore newStore, int[] newRows) {
+            this.oldStore = oldStore;
+            this.oldRows = oldRows;
+            this.newStore = newStore;
+            this.newRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRows != null ? oldRows.length : oldStore.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRows != null ? newRows.length : newStore.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldStore.sameEntityId(oldRow(oldPosition), newStore, newRow(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return oldStore.sameStateAndName(oldRow(oldPosition), newStore, newRow(newPosition));
+        }
+
+        private int oldRow(int position) {
+            return oldRows != null ? oldRows[position] : position;
+        }
+
+        private int newRow(int position) {
+            return newRows != null ? newRows[position] : position;
+        }
     }
 
     static class DeviceViewHolder extends RecyclerView.ViewHolder {
@@ -103,7 +245,7 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
         final TextView tvState;
         final int defaultCardColor;
         final ImageView ivSelected;
-        final FrameLayout rootContainer;
+        final ParticleBurstView particleBurst;
 
         public DeviceViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -112,19 +254,20 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
             tvEntityId = itemView.findViewById(R.id.tv_entity_id);
             tvState = itemView.findViewById(R.id.tv_state);
             ivSelected = itemView.findViewById(R.id.iv_selected_indicator);
-            rootContainer = itemView.findViewById(R.id.root_container);
+            particleBurst = itemView.findViewById(R.id.particle_burst);
+            particleBurst.setIndicator(ivSelected);
             defaultCardColor = cardView.getCardBackgroundColor().getDefaultColor();
         }
 
-        public void bind(HomeAssistantEntity entity, OnDeviceClickListener listener, boolean selected) {
-            tvName.setText(entity.getFriendlyName());
-            tvEntityId.setText(entity.getEntityId());
-            tvState.setText(entity.getState().toUpperCase());
-            ivSelected.setVisibility(selected ? View.VISIBLE : View.GONE);
+        public void bind(EntityStore store, int row, OnDeviceClickListener listener, boolean selected) {
+            tvName.setText(store.getFriendlyName(row));
+            tvEntityId.setText(store.getEntityId(row));
+            tvState.setText(store.getState(row).toUpperCase());
+            bindSelection(selected);
             // restore default background (in case previously tinted)
             cardView.setCardBackgroundColor(defaultCardColor);
 
-            if (entity.isOn()) {
+            if (store.isOn(row)) {
                 tvState.setTextColor(itemView.getContext().getColor(android.R.color.holo_green_dark));
             } else {
                 tvState.setTextColor(itemView.getContext().getColor(android.R.color.holo_red_dark));
@@ -132,71 +275,18 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
 
             cardView.setOnClickListener(v -> {
                 if (listener != null) {
-                    listener.onDeviceClick(entity);
+                    listener.onDeviceClick(store.get(row));
                 }
             });
         }
 
-        void playSelectionAnimation() {
-            // Animate the green dot popping in
-            ivSelected.setScaleX(0f);
-            ivSelected.setScaleY(0f);
-            ivSelected.setAlpha(0f);
-            ivSelected.setVisibility(View.VISIBLE);
-            AnimatorSet popSet = new AnimatorSet();
-            ObjectAnimator sx = ObjectAnimator.ofFloat(ivSelected, View.SCALE_X, 0f, 1f);
-            ObjectAnimator sy = ObjectAnimator.ofFloat(ivSelected, View.SCALE_Y, 0f, 1f);
-            ObjectAnimator a = ObjectAnimator.ofFloat(ivSelected, View.ALPHA, 0f, 1f);
-            sx.setInterpolator(new OvershootInterpolator());
-            sy.setInterpolator(new OvershootInterpolator());
-            popSet.setDuration(300);
-            popSet.playTogether(sx, sy, a);
-            popSet.start();
-
-            // Particle explosion
-            int particleCount = 10;
-            float maxRadius = dp(36);
-            for (int i = 0; i < particleCount; i++) {
-                final View particle = new View(itemView.getContext());
-                int size = (int) dp(6);
-                FrameLayout.LayoutParams lp = new FrameLayout.LayoutParams(size, size, Gravity.END | Gravity.BOTTOM);
-                lp.setMargins(0,0, (int) dp(12), (int) dp(12)); // start near dot
-                particle.setLayoutParams(lp);
-                particle.setBackground(createParticleBackground());
-                particle.setAlpha(0f);
-                rootContainer.addView(particle);
-
-                double angle = (2 * Math.PI / particleCount) * i + Math.random()*0.5; // slight randomness
-                float targetX = (float) (Math.cos(angle) * maxRadius);
-                float targetY = (float) (Math.sin(angle) * maxRadius);
-
-                ObjectAnimator tx = ObjectAnimator.ofFloat(particle, View.TRANSLATION_X, 0f, -targetX); // negative because Gravity.END
-                ObjectAnimator ty = ObjectAnimator.ofFloat(particle, View.TRANSLATION_Y, 0f, -targetY); // negative because Gravity.BOTTOM
-                ObjectAnimator psx = ObjectAnimator.ofFloat(particle, View.SCALE_X, 1f, 0.2f);
-                ObjectAnimator psy = ObjectAnimator.ofFloat(particle, View.SCALE_Y, 1f, 0.2f);
-                ObjectAnimator pa = ObjectAnimator.ofFloat(particle, View.ALPHA, 0f, 1f, 0f);
-                AnimatorSet set = new AnimatorSet();
-                set.playTogether(tx, ty, psx, psy, pa);
-                set.setInterpolator(new AccelerateInterpolator());
-                set.setStartDelay(i * 15L);
-                set.setDuration(450);
-                set.addListener(new AnimatorListenerAdapter() {
-                    @Override public void onAnimationEnd(Animator animation) { rootContainer.removeView(particle); }
-                });
-                set.start();
-            }
-        }
-
-        private float dp(float v) {
-            return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, v, itemView.getResources().getDisplayMetrics());
+        void bindSelection(boolean selected) {
+            particleBurst.cancel();
+            ivSelected.setVisibility(selected ? View.VISIBLE : View.GONE);
         }
 
-        private android.graphics.drawable.Drawable createParticleBackground() {
-            android.graphics.drawable.GradientDrawable d = new android.graphics.drawable.GradientDrawable();
-            d.setShape(android.graphics.drawable.GradientDrawable.OVAL);
-            d.setColor(0xFF4CAF50); // green
-            d.setStroke((int) dp(1), 0xFF2E7D32);
-            return d;
+        void playSelectionAnimation() {
+            particleBurst.burst();
         }
     }
 }
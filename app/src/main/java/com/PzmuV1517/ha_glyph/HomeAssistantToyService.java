@@ -1,98 +1,255 @@
 package com.PzmuV1517.ha_glyph;
 
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.os.Message;
 import android.os.Messenger;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.nothing.ketchum.Glyph;
 import com.nothing.ketchum.GlyphMatrixManager;
-import com.nothing.ketchum.GlyphMatrixFrame;
-import com.nothing.ketchum.GlyphMatrixObject;
 import com.nothing.ketchum.GlyphMatrixUtils;
 import com.nothing.ketchum.GlyphToy;
 
+import com.PzmuV1517.ha_glyph.api.ApiError;
+import com.PzmuV1517.ha_glyph.api.CircuitBreaker;
+import com.PzmuV1517.ha_glyph.api.EntitySubscription;
 import com.PzmuV1517.ha_glyph.api.HomeAssistantApiClient;
+import com.PzmuV1517.ha_glyph.api.HttpTransport;
 import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.AndroidConnectivity;
+import com.PzmuV1517.ha_glyph.util.FallbackSprites;
+import com.PzmuV1517.ha_glyph.util.GlyphCompositor;
+import com.PzmuV1517.ha_glyph.util.GlyphFrameCache;
+import com.PzmuV1517.ha_glyph.util.GlyphFrameSink;
+import com.PzmuV1517.ha_glyph.util.Metrics;
+import com.PzmuV1517.ha_glyph.util.NetworkGate;
+import com.PzmuV1517.ha_glyph.util.OptimisticToggle;
+import com.PzmuV1517.ha_glyph.util.PollPolicy;
 import com.PzmuV1517.ha_glyph.util.PreferencesManager;
+import com.PzmuV1517.ha_glyph.util.SpriteAnimation;
+import com.PzmuV1517.ha_glyph.util.SpriteAnimationPlayer;
+import com.PzmuV1517.ha_glyph.util.SpriteData;
 import com.PzmuV1517.ha_glyph.util.SpriteLoader;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 public class HomeAssistantToyService extends Service {
     private static final String TAG = "HAGlyphToy";
 
     private GlyphMatrixManager mGM;
     private GlyphMatrixManager.Callback mCallback;
+    private GlyphFrameSink frameSink;
+    private GlyphFrameCache frameCache; // only for sprites handed in as bitmaps
+    private GlyphCompositor compositor;
 
     private HomeAssistantApiClient apiClient;
     private PreferencesManager prefsManager;
-    private Handler mainHandler;
-    private Handler updateHandler;
-    private Runnable updateRunnable;
-
-    private boolean isDeviceOn = false;
+    // Everything below is owned by the worker thread; lifecycle and binder calls hop onto it
+    private HandlerThread workerThread;
+    private Handler workerHandler;
+    private Messenger serviceMessenger;
+    private PollPolicy pollPolicy;
+    private boolean monitoring = false;
+    private NetworkGate networkGate; // requests and the WebSocket are suspended while it says unreachable
+    private EntitySubscription entitySubscription;
+    private boolean pushActive = false; // WebSocket feed live, REST polling paused
+    private String rejectedToken; // answered with 401/403; not used again until the app saves another
+
+    private boolean isDeviceOn = false; // what the glyph shows, including a predicted toggle
     private String selectedEntityId;
-
-    // Bitmap sprites for on/off states
-    private Bitmap onSprite;
-    private Bitmap offSprite;
-    private Bitmap errorSprite;
+    private OptimisticToggle toggleState;
+    private boolean showingRollback = false;
+    private long pressStartedAt = 0; // uptime of the press whose frame hasn't reached the matrix yet
+
+    // Looked up once; recording on the frame path is allocation-free
+    private final Metrics.Counter glyphReconnects = Metrics.get().counter("glyph.reconnects");
+    private final Metrics.Counter errorSpriteShown = Metrics.get().counter("glyph.errorSprite.shown");
+    private final Metrics.Counter networkSuspends = Metrics.get().counter("network.suspends");
+    private final Metrics.Histogram pressToPixel = Metrics.get().histogram("toggle.pressToPixel.ms", Metrics.LATENCY_MS_BUCKETS);
+    private final Metrics.Histogram errorStreaks = Metrics.get().histogram("state.errorStreak", Metrics.COUNT_BUCKETS);
+    private final Metrics.Histogram renderTime = Metrics.get().histogram("glyph.render.us", Metrics.RENDER_US_BUCKETS);
+
+    // Pre-rendered sprite animations for on/off/error states (single frame = still image)
+    private SpriteAnimation onAnimation;
+    private SpriteAnimation offAnimation;
+    private SpriteAnimation errorAnimation;
+    private SpriteAnimationPlayer animationPlayer;
+    private SpriteAnimation shownAnimation;
+
+    // Animations only run while the toy is on the matrix, the screen is on and we're not in AOD
+    private boolean toyVisible = false;
+    private boolean screenOn = true;
+    private boolean inAod = false;
 
     private SpriteLoader spriteLoader;
 
     private boolean initialized = false;
     private int consecutiveErrors = 0;
     private static final int MAX_CONSECUTIVE_ERRORS_BEFORE_ERROR_SPRITE = 3;
+    private static final int SPRITE_BRIGHTNESS = 255;
+    private static final int SPRITE_SCALE = 100;
+    private static final long MIN_FRAME_PUSH_INTERVAL_MS = 33;
+    private static final long FRAME_KEEP_ALIVE_MS = 10000; // guard against the glyph clearing
+    private static final long TOGGLE_REFRESH_DELAY_MS = 250;
+    private static final long TOGGLE_CONFIRM_TIMEOUT_MS = 3000;
+    private static final long ROLLBACK_FLASH_MS = 600;
+    private static final long OFFLINE_ERROR_DELAY_MS = 5000; // rides out a Wi-Fi/mobile handover
+    private static final long DUMP_TIMEOUT_MS = 1000; // dumpsys waits this long for the worker
+    private final Runnable confirmTimeoutRunnable = () -> {
+        toggleState.onConfirmTimeout();
+        refreshDeviceState();
+    };
+    private final Runnable pollRunnable = () -> {
+        updateDeviceState();
+        schedulePoll();
+    };
+    private final Runnable offlineErrorRunnable = () -> displayErrorState();
+    private final Runnable endRollbackRunnable = () -> {
+        showingRollback = false;
+        displayCurrentState();
+    };
     private final Runnable reconnectRunnable = new Runnable() {
         @Override public void run() {
             if (mGM != null && mCallback != null) {
                 try {
                     Log.d(TAG, "Attempting GlyphMatrixManager re-init");
+                    glyphReconnects.increment();
                     mGM.init(mCallback);
                 } catch (Exception e) {
                     Log.e(TAG, "Re-init failed, scheduling retry", e);
-                    mainHandler.postDelayed(this, 5000);
+                    workerHandler.postDelayed(this, 5000);
                 }
             }
         }
     };
 
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            screenOn = Intent.ACTION_SCREEN_ON.equals(intent.getAction());
+            if (screenOn) {
+                inAod = false; // AOD ends when the screen comes back on
+            }
+            updatePlayback();
+            updatePolling();
+        }
+    };
+
     @Override
     public void onCreate() {
         super.onCreate();
-        init();
+        // Polling, toggles and frame rendering run here, off the UI thread shared with MainActivity
+        workerThread = new HandlerThread("HAGlyphToy-worker", Process.THREAD_PRIORITY_DISPLAY);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+        serviceMessenger = new Messenger(new ServiceHandler(workerThread.getLooper()));
+        workerHandler.post(this::init);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         // Ensure still initialized if system restarted service
-        if (!initialized) {
-            init();
-        }
+        workerHandler.post(() -> {
+            if (!initialized) {
+                init();
+            }
+        });
         return START_STICKY; // request restart after being killed
     }
 
     @Override
     public void onDestroy() {
-        cleanup();
+        workerHandler.post(this::cleanup);
+        workerThread.quitSafely();
         super.onDestroy();
     }
 
+    // adb shell dumpsys activity service com.PzmuV1517.ha_glyph/.HomeAssistantToyService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("HomeAssistant Glyph Toy");
+        writer.print(snapshotState());
+        if ("--reset".equals(args.length > 0 ? args[0] : null)) {
+            Metrics.get().reset();
+            writer.println("  metrics reset");
+            return;
+        }
+        Metrics.get().dump(writer);
+    }
+
+    // Runs on a binder thread; the state belongs to the worker, so it is read there
+    private String snapshotState() {
+        FutureTask<String> snapshot = new FutureTask<>(this::describeState);
+        if (!workerHandler.post(snapshot)) return "  state unavailable: worker stopped\n";
+        try {
+            return snapshot.get(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "  state unavailable: interrupted\n";
+        } catch (ExecutionException | TimeoutException e) {
+            snapshot.cancel(false);
+            return "  state unavailable: " + e + "\n";
+        }
+    }
+
+    private String describeState() {
+        StringBuilder state = new StringBuilder();
+        state.append("  entity=").append(selectedEntityId).append(" on=").append(isDeviceOn)
+                .append(" pushActive=").append(pushActive).append(" visible=").append(toyVisible)
+                .append(" screenOn=").append(screenOn).append(" aod=").append(inAod)
+                .append(" consecutiveErrors=").append(consecutiveErrors)
+                .append(" authRejected=").append(rejectedToken != null).append('\n');
+        if (networkGate != null) {
+            state.append("  reachable=").append(networkGate.isReachable())
+                    .append(" localOnlyServer=").append(networkGate.isLocalOnly()).append('\n');
+        }
+        if (pollPolicy != null) {
+            state.append("  pollIntervalMs=").append(pollPolicy.currentIntervalMs())
+                    .append(" nextPollMs=").append(pollPolicy.nextPollDelayMs()).append('\n');
+        }
+        CircuitBreaker breaker = apiClient != null ? apiClient.getCircuitBreaker() : null;
+        if (breaker != null) {
+            state.append("  circuit=").append(breaker.getState())
+                    .append(" retryInMs=").append(breaker.retryInMs()).append('\n');
+        }
+        if (apiClient != null && apiClient.getEndpoint() != null) {
+            state.append("  endpoint=").append(apiClient.getEndpoint())
+                    .append(" probeMs=").append(apiClient.getEndpointLatencies()).append('\n');
+        }
+        return state.toString();
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         Log.d(TAG, "Service bound");
-        if (!initialized) {
-            init();
-        }
+        workerHandler.post(() -> {
+            if (!initialized) {
+                init();
+            }
+            toyVisible = true;
+            updatePlayback();
+            updatePolling();
+        });
         return serviceMessenger.getBinder();
     }
 
@@ -100,6 +257,11 @@ public class HomeAssistantToyService extends Service {
     public boolean onUnbind(Intent intent) {
         Log.d(TAG, "Service unbound");
         // Do NOT cleanup fully; keep monitoring so glyph continues while app UI gone
+        workerHandler.post(() -> {
+            toyVisible = false;
+            updatePlayback();
+            updatePolling();
+        });
         return true; // allow onRebind
     }
 
@@ -107,6 +269,11 @@ public class HomeAssistantToyService extends Service {
     public void onRebind(Intent intent) {
         super.onRebind(intent);
         Log.d(TAG, "Service rebound");
+        workerHandler.post(() -> {
+            toyVisible = true;
+            updatePlayback();
+            updatePolling();
+        });
     }
 
     private void init() {
@@ -115,48 +282,103 @@ public class HomeAssistantToyService extends Service {
 
         prefsManager = new PreferencesManager(this);
         apiClient = new HomeAssistantApiClient();
-        mainHandler = new Handler(Looper.getMainLooper());
-        updateHandler = new Handler(Looper.getMainLooper());
         spriteLoader = new SpriteLoader(this);
+        frameCache = new GlyphFrameCache(this);
+        toggleState = new OptimisticToggle();
+        pollPolicy = new PollPolicy(SystemClock::uptimeMillis);
+        networkGate = new NetworkGate(new AndroidConnectivity(this, workerHandler), new NetworkGate.Listener() {
+            @Override
+            public void onSuspend() {
+                suspendForNetwork();
+            }
+
+            @Override
+            public void onResume() {
+                resumeAfterNetwork();
+            }
+
+            @Override
+            public void onNetworkChanged() {
+                apiClient.setLocalNetwork(networkGate.isOnLocalNetwork());
+            }
+        });
+        apiClient.setEndpointListener(baseUrl -> workerHandler.post(this::onEndpointChanged));
         consecutiveErrors = 0;
 
         // Load configuration
-        String url = prefsManager.getHomeAssistantUrl();
+        List<String> urls = prefsManager.getHomeAssistantUrls();
         String token = prefsManager.getHomeAssistantToken();
         selectedEntityId = prefsManager.getSelectedEntity();
 
-        if (url != null && token != null) {
-            apiClient.configure(url, token);
+        networkGate.start(urls);
+        if (!urls.isEmpty() && token != null) {
+            apiClient.configure(urls, token);
+            apiClient.setLocalNetwork(networkGate.isOnLocalNetwork());
+            apiClient.preconnect(); // overlap connection setup with sprite loading
         }
 
         // Initialize sprites from JSON files
         initSpritesFromJson();
 
         mGM = GlyphMatrixManager.getInstance(getApplicationContext());
+        frameSink = new GlyphFrameSink(frame -> {
+            if (mGM != null) mGM.setMatrixFrame(frame);
+            if (pressStartedAt != 0) {
+                pressToPixel.record(SystemClock.uptimeMillis() - pressStartedAt);
+                pressStartedAt = 0;
+            }
+        }, workerHandler, MIN_FRAME_PUSH_INTERVAL_MS, FRAME_KEEP_ALIVE_MS);
+        animationPlayer = new SpriteAnimationPlayer(frameSink, workerHandler);
+
+        PowerManager powerManager = getSystemService(PowerManager.class);
+        screenOn = powerManager == null || powerManager.isInteractive();
+        IntentFilter screenFilter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        screenFilter.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(screenReceiver, screenFilter, null, workerHandler);
+        updatePlayback();
         mCallback = new GlyphMatrixManager.Callback() {
             @Override
             public void onServiceConnected(ComponentName componentName) {
-                Log.d(TAG, "Glyph Matrix service connected");
-                try { mGM.register(Glyph.DEVICE_23112); } catch (Exception e) { Log.e(TAG, "Register failed", e); }
-                startDeviceMonitoring();
+                workerHandler.post(() -> {
+                    if (mGM == null) return; // cleaned up meanwhile
+                    Log.d(TAG, "Glyph Matrix service connected");
+                    try { mGM.register(Glyph.DEVICE_23112); } catch (Exception e) { Log.e(TAG, "Register failed", e); }
+                    frameSink.reset(); // matrix content is unknown after (re)connect
+                    startDeviceMonitoring();
+                });
             }
 
             @Override
             public void onServiceDisconnected(ComponentName componentName) {
-                Log.d(TAG, "Glyph Matrix service disconnected, scheduling re-init");
-                stopDeviceMonitoring();
-                mainHandler.removeCallbacks(reconnectRunnable);
-                mainHandler.postDelayed(reconnectRunnable, 3000);
+                workerHandler.post(() -> {
+                    Log.d(TAG, "Glyph Matrix service disconnected, scheduling re-init");
+                    stopDeviceMonitoring();
+                    workerHandler.removeCallbacks(reconnectRunnable);
+                    workerHandler.postDelayed(reconnectRunnable, 3000);
+                });
             }
         };
-        try { mGM.init(mCallback); } catch (Exception e) { Log.e(TAG, "Initial mGM.init failed", e); mainHandler.postDelayed(reconnectRunnable, 3000); }
+        try { mGM.init(mCallback); } catch (Exception e) { Log.e(TAG, "Initial mGM.init failed", e); workerHandler.postDelayed(reconnectRunnable, 3000); }
         initialized = true;
     }
 
     private void cleanup() {
         Log.d(TAG, "Cleaning up service");
         stopDeviceMonitoring();
-        mainHandler.removeCallbacks(reconnectRunnable);
+        if (networkGate != null) networkGate.stop();
+        workerHandler.removeCallbacks(offlineErrorRunnable);
+        workerHandler.removeCallbacks(reconnectRunnable);
+        workerHandler.removeCallbacks(confirmTimeoutRunnable);
+        workerHandler.removeCallbacks(endRollbackRunnable);
+        if (initialized) {
+            try { unregisterReceiver(screenReceiver); } catch (IllegalArgumentException ignore) {}
+        }
+        if (animationPlayer != null) {
+            animationPlayer.stop();
+        }
+        if (frameSink != null) {
+            frameSink.release();
+        }
         if (mGM != null) {
             try { mGM.unInit(); } catch (Exception ignore) {}
             mGM = null;
@@ -166,104 +388,223 @@ public class HomeAssistantToyService extends Service {
     }
 
     private void initSpritesFromJson() {
-        try {
-            // Load your custom sprites from JSON
-            onSprite = spriteLoader.loadOnSprite();
-            offSprite = spriteLoader.loadOffSprite();
-            errorSprite = spriteLoader.loadErrorSprite();
-            Log.d(TAG, "Successfully loaded custom sprites from JSON");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to load custom sprites, using defaults", e);
-            // Fall back to default sprites
-            initDefaultSprites();
-        }
+        // Load your custom sprites from JSON, falling back to drawn defaults
+        SpriteData on = spriteLoader.loadOnSpriteData();
+        SpriteData off = spriteLoader.loadOffSpriteData();
+        SpriteData error = spriteLoader.loadErrorSpriteData();
+
+        // Mask the matrix with the shape the sprites were drawn for
+        compositor = on != null && on.getHeight() == GlyphCompositor.SIZE
+                ? new GlyphCompositor(on.getShape()) : new GlyphCompositor();
+        onAnimation = buildAnimation(on != null ? on : FallbackSprites.on());
+        offAnimation = buildAnimation(off != null ? off : FallbackSprites.off());
+        errorAnimation = buildAnimation(error != null ? error : FallbackSprites.error());
+        Log.d(TAG, "Loaded sprites: on=" + onAnimation.getFrameCount() + " off=" + offAnimation.getFrameCount()
+                + " error=" + errorAnimation.getFrameCount() + " frames");
     }
 
-    private void initDefaultSprites() {
-        // Create default 25x25 bitmaps for on/off states (fallback)
-        onSprite = createDefaultOnSprite();
-        offSprite = createDefaultOffSprite();
-        errorSprite = spriteLoader.loadErrorSprite(); // Try to load error sprite even if others fail
+    // Every frame is rendered once up front; playback only hands the buffers to the frame sink
+    private SpriteAnimation buildAnimation(SpriteData sprite) {
+        int frameCount = sprite.getFrameCount();
+        int[][] frames = new int[frameCount][];
+        int[] durations = new int[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            long start = System.nanoTime();
+            frames[i] = compositor.clear()
+                    .addLayer(sprite, i, SPRITE_BRIGHTNESS)
+                    .compose(new int[GlyphCompositor.PIXELS]);
+            renderTime.record((System.nanoTime() - start) / 1000);
+            durations[i] = sprite.getFrameDuration(i);
+        }
+        return new SpriteAnimation(frames, durations);
     }
 
-    private Bitmap createDefaultOnSprite() {
-        Bitmap bitmap = Bitmap.createBitmap(25, 25, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        Paint paint = new Paint();
-        paint.setColor(Color.GREEN);
-        paint.setAntiAlias(true);
-
-        // Draw a filled circle for "ON" state
-        canvas.drawCircle(12.5f, 12.5f, 10f, paint);
-        return bitmap;
+    private SpriteAnimation stillAnimation(Bitmap sprite) {
+        return SpriteAnimation.still(frameCache.get(sprite, SPRITE_BRIGHTNESS, SPRITE_SCALE));
     }
 
-    private Bitmap createDefaultOffSprite() {
-        Bitmap bitmap = Bitmap.createBitmap(25, 25, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-        Paint paint = new Paint();
-        paint.setColor(Color.GRAY);
-        paint.setStrokeWidth(2f);
-
-        // Draw an X for "OFF" state
-        canvas.drawLine(5, 5, 20, 20, paint);
-        canvas.drawLine(20, 5, 5, 20, paint);
-        return bitmap;
+    private void updatePlayback() {
+        if (animationPlayer == null) return;
+        if (toyVisible && screenOn && !inAod) {
+            animationPlayer.resume();
+        } else {
+            animationPlayer.pause();
+        }
     }
 
     private void startDeviceMonitoring() {
+        if (rejectedToken != null && !reloadRejectedToken()) {
+            Log.w(TAG, "Token was rejected by Home Assistant, not monitoring until it changes");
+            displayErrorState();
+            return;
+        }
         if (selectedEntityId == null || !apiClient.isConfigured()) {
             Log.w(TAG, "Cannot start monitoring - not configured or no device selected");
             displayErrorState();
             return;
         }
 
-        // Update immediately
+        // Update immediately, then poll as the policy says until the WebSocket feed takes over
+        monitoring = true;
+        if (!networkGate.isReachable()) {
+            Log.d(TAG, "Server not reachable on this network, waiting for one");
+            suspendForNetwork();
+            return;
+        }
         updateDeviceState();
+        updatePolling();
+        subscribe();
+    }
+
+    private void subscribe() {
+        if (entitySubscription != null) {
+            entitySubscription.close();
+        }
+        entitySubscription = apiClient.subscribeEntity(selectedEntityId, new HomeAssistantApiClient.EntityStateListener() {
+            @Override
+            public void onSubscribed() {
+                workerHandler.post(() -> {
+                    Log.d(TAG, "WebSocket subscription active, pausing REST polling");
+                    pushActive = true;
+                    updatePolling();
+                });
+            }
 
-        // Set up periodic updates every 2 seconds for real-time monitoring
-        updateRunnable = new Runnable() {
             @Override
-            public void run() {
-                updateDeviceState();
-                updateHandler.postDelayed(this, 2000); // 2 seconds
+            public void onEntityState(HomeAssistantEntity entity) {
+                workerHandler.post(() -> applyEntityState(entity));
             }
-        };
-        updateHandler.post(updateRunnable);
+
+            @Override
+            public void onDisconnected(String reason, boolean willRetry) {
+                Log.w(TAG, "WebSocket subscription lost (" + reason + "), falling back to REST polling");
+                workerHandler.post(() -> {
+                    if (!pushActive) return; // already polling, or monitoring stopped
+                    pushActive = false;
+                    updatePolling();
+                });
+            }
+        });
+    }
+
+    // No network that can reach the server: stop polling and close the WebSocket instead of
+    // failing every request; the last state stays up until the drop outlasts a handover
+    private void suspendForNetwork() {
+        networkSuspends.increment();
+        if (entitySubscription != null) {
+            entitySubscription.close();
+            entitySubscription = null;
+        }
+        pushActive = false;
+        updatePolling();
+        workerHandler.removeCallbacks(offlineErrorRunnable);
+        if (monitoring) workerHandler.postDelayed(offlineErrorRunnable, OFFLINE_ERROR_DELAY_MS);
+    }
+
+    private void resumeAfterNetwork() {
+        workerHandler.removeCallbacks(offlineErrorRunnable);
+        // Pooled connections, DNS answers and past failures belong to the old network
+        HttpTransport transport = HttpTransport.get();
+        transport.client().connectionPool().evictAll();
+        transport.flushDns();
+        CircuitBreaker breaker = apiClient.getCircuitBreaker();
+        if (breaker != null) breaker.reset();
+        apiClient.setLocalNetwork(networkGate.isOnLocalNetwork());
+        apiClient.probeEndpoints();
+        if (!monitoring) return;
+        Log.d(TAG, "Network back, fetching state");
+        consecutiveErrors = 0;
+        refreshDeviceState();
+        updatePolling();
+        subscribe();
+    }
+
+    // Requests moved to a faster base URL; move the WebSocket along with them
+    private void onEndpointChanged() {
+        Log.d(TAG, "Using " + apiClient.getEndpoint());
+        if (monitoring && entitySubscription != null) {
+            subscribe();
+        }
+    }
+
+    // A revoked token fails every request; stop instead of retrying it forever
+    private void onTerminalError(ApiError error) {
+        Log.e(TAG, "Stopping monitoring, retrying can't help: " + error);
+        rejectedToken = prefsManager.getHomeAssistantToken();
+        stopDeviceMonitoring();
+        displayErrorState();
+    }
+
+    // True if the app has saved a different token since the last one was rejected
+    private boolean reloadRejectedToken() {
+        List<String> urls = prefsManager.getHomeAssistantUrls();
+        String token = prefsManager.getHomeAssistantToken();
+        if (urls.isEmpty() || token == null || token.equals(rejectedToken)) return false;
+        apiClient.configure(urls, token);
+        apiClient.setLocalNetwork(networkGate.isOnLocalNetwork());
+        networkGate.setServerUrls(urls);
+        rejectedToken = null;
+        return true;
     }
 
     private void stopDeviceMonitoring() {
-        if (updateHandler != null && updateRunnable != null) {
-            updateHandler.removeCallbacks(updateRunnable);
+        if (entitySubscription != null) {
+            entitySubscription.close();
+            entitySubscription = null;
+        }
+        pushActive = false;
+        monitoring = false;
+        workerHandler.removeCallbacks(pollRunnable);
+    }
+
+    // Call after anything the poll policy looks at changed
+    private void updatePolling() {
+        if (pollPolicy == null) return;
+        pollPolicy.setVisible(toyVisible);
+        pollPolicy.setAod(inAod);
+        pollPolicy.setPushActive(pushActive);
+        pollPolicy.setNetworkAvailable(networkGate.isReachable());
+        schedulePoll();
+    }
+
+    private void schedulePoll() {
+        workerHandler.removeCallbacks(pollRunnable);
+        if (!monitoring) return;
+        long delay = pollPolicy.nextPollDelayMs();
+        if (delay != PollPolicy.NO_TIMER) {
+            workerHandler.postDelayed(pollRunnable, delay);
         }
     }
 
     private void updateDeviceState() {
-        if (selectedEntityId == null || !apiClient.isConfigured()) {
+        fetchDeviceState(false);
+    }
+
+    // Skips joining an in-flight fetch, which may predate a toggle
+    private void refreshDeviceState() {
+        fetchDeviceState(true);
+    }
+
+    private void fetchDeviceState(boolean forceNew) {
+        pollPolicy.onPolled(); // even when skipped, so the timer can't spin
+        if (selectedEntityId == null || !apiClient.isConfigured() || !networkGate.isReachable()) {
             return;
         }
 
-        apiClient.getEntityState(selectedEntityId, new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+        HomeAssistantApiClient.ApiCallback<HomeAssistantEntity> callback = new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
             @Override
             public void onSuccess(HomeAssistantEntity entity) {
-                mainHandler.post(() -> {
-                    consecutiveErrors = 0; // reset error streak
-                    boolean newState = entity.isOn();
-                    if (newState != isDeviceOn) {
-                        isDeviceOn = newState;
-                        Log.d(TAG, "Device state changed to: " + (isDeviceOn ? "ON" : "OFF"));
-                        displayCurrentState();
-                    } else if (onSprite != null && offSprite != null) {
-                        // Periodically re-push frame to guard against glyph clearing
-                        displayCurrentState();
-                    }
-                });
+                workerHandler.post(() -> applyEntityState(entity));
             }
 
             @Override
-            public void onError(String error) {
-                Log.w(TAG, "Transient device state fetch error: " + error);
-                mainHandler.post(() -> {
+            public void onError(ApiError error) {
+                Log.w(TAG, "Device state fetch error: " + error);
+                workerHandler.post(() -> {
+                    if (error.isTerminal()) {
+                        onTerminalError(error);
+                        return;
+                    }
                     consecutiveErrors++;
                     if (consecutiveErrors >= MAX_CONSECUTIVE_ERRORS_BEFORE_ERROR_SPRITE) {
                         displayErrorState();
@@ -273,105 +614,162 @@ public class HomeAssistantToyService extends Service {
                     }
                 });
             }
-        });
-    }
-
-    private void displayCurrentState() {
-        if (mGM == null) return;
+        };
 
-        try {
-            Bitmap spriteToShow = isDeviceOn ? onSprite : offSprite;
+        if (forceNew) {
+            apiClient.refreshEntityState(selectedEntityId, callback);
+        } else {
+            apiClient.getEntityState(selectedEntityId, callback);
+        }
+    }
 
-            GlyphMatrixObject.Builder objectBuilder = new GlyphMatrixObject.Builder();
-            GlyphMatrixObject matrixObject = objectBuilder
-                    .setImageSource(spriteToShow)
-                    .setPosition(0, 0)
-                    .setScale(100)
-                    .setBrightness(255)
-                    .build();
+    private void applyEntityState(HomeAssistantEntity entity) {
+        if (consecutiveErrors > 0) {
+            errorStreaks.record(consecutiveErrors);
+        }
+        consecutiveErrors = 0; // reset error streak
+        int result = toggleState.onServerState(entity.isOn());
+        if (result == OptimisticToggle.RESULT_CONFIRMED) {
+            workerHandler.removeCallbacks(confirmTimeoutRunnable);
+        } else if (result == OptimisticToggle.RESULT_ROLLED_BACK) {
+            Log.w(TAG, "Home Assistant reports " + (entity.isOn() ? "ON" : "OFF") + " after toggle, rolling back");
+            showRollback();
+        }
+        boolean newState = toggleState.isDisplayedOn();
+        if (newState != isDeviceOn) {
+            isDeviceOn = newState;
+            Log.d(TAG, "Device state changed to: " + (isDeviceOn ? "ON" : "OFF"));
+            pollPolicy.onActivity();
+            schedulePoll();
+        }
+        // Unchanged frames are dropped by the frame sink, so this is cheap on every update
+        displayCurrentState();
+    }
 
-            GlyphMatrixFrame.Builder frameBuilder = new GlyphMatrixFrame.Builder();
-            GlyphMatrixFrame frame = frameBuilder.addTop(matrixObject).build(this);
+    // Briefly shows the error sprite so a reverted toggle doesn't go unnoticed
+    private void showRollback() {
+        showingRollback = true;
+        workerHandler.removeCallbacks(endRollbackRunnable);
+        workerHandler.postDelayed(endRollbackRunnable, ROLLBACK_FLASH_MS);
+        displayErrorState();
+    }
 
-            mGM.setMatrixFrame(frame.render());
-            Log.d(TAG, "Displayed " + (isDeviceOn ? "ON" : "OFF") + " state");
-        } catch (Exception e) {
-            Log.e(TAG, "Error displaying state", e);
-        }
+    private void displayCurrentState() {
+        if (mGM == null || showingRollback) return;
+        show(isDeviceOn ? onAnimation : offAnimation);
     }
 
     private void displayErrorState() {
         if (mGM == null) return;
-
-        try {
-            // Use the error sprite from HA-err.json instead of creating shapes
-            Bitmap spriteToShow = errorSprite != null ? errorSprite : spriteLoader.loadErrorSprite();
-
-            if (spriteToShow == null) {
-                // Fallback to a simple error pattern if sprite loading fails
-                spriteToShow = Bitmap.createBitmap(25, 25, Bitmap.Config.ARGB_8888);
-                Canvas canvas = new Canvas(spriteToShow);
-                Paint paint = new Paint();
-                paint.setColor(Color.RED);
-                canvas.drawRect(0, 0, 25, 25, paint);
-            }
-
-            GlyphMatrixObject.Builder objectBuilder = new GlyphMatrixObject.Builder();
-            GlyphMatrixObject matrixObject = objectBuilder
-                    .setImageSource(spriteToShow)
-                    .setPosition(0, 0)
-                    .setScale(100)
-                    .setBrightness(255)
-                    .build();
-
-            GlyphMatrixFrame.Builder frameBuilder = new GlyphMatrixFrame.Builder();
-            GlyphMatrixFrame frame = frameBuilder.addTop(matrixObject).build(this);
-
-            mGM.setMatrixFrame(frame.render());
-            Log.d(TAG, "Displayed error state using HA-err.json sprite");
-        } catch (Exception e) {
-            Log.e(TAG, "Error displaying error state", e);
+        if (shownAnimation != errorAnimation) {
+            errorSpriteShown.increment();
         }
+        show(errorAnimation);
     }
 
-    private void toggleDevice() {
+    private void show(SpriteAnimation animation) {
+        shownAnimation = animation;
+        animationPlayer.play(animation);
+    }
+
+    private void toggleDevice(long pressedAt) {
         if (selectedEntityId == null || !apiClient.isConfigured()) {
             Log.w(TAG, "Cannot toggle - not configured or no device selected");
             return;
         }
+        if (rejectedToken != null) {
+            // Resumes monitoring if a new token was saved meanwhile
+            startDeviceMonitoring();
+            if (rejectedToken != null) return;
+        }
 
-        Log.d(TAG, "Toggling device: " + selectedEntityId);
+        // Show the predicted state now; the server confirms or we roll back later
+        Boolean target = toggleState.press();
+        pressStartedAt = pressedAt;
+        pollPolicy.onActivity();
+        schedulePoll();
+        isDeviceOn = toggleState.isDisplayedOn();
+        showingRollback = false;
+        workerHandler.removeCallbacks(endRollbackRunnable);
+        workerHandler.removeCallbacks(confirmTimeoutRunnable);
+        displayCurrentState();
 
-        apiClient.toggleEntity(selectedEntityId, new HomeAssistantApiClient.ApiCallback<Boolean>() {
+        if (target != null) {
+            sendToggle(target);
+        } else {
+            Log.d(TAG, "Toggle already in flight, coalescing press");
+        }
+    }
+
+    // Explicit on/off rather than toggle, so a coalesced or retried call can't flip twice
+    private void sendToggle(boolean turnOn) {
+        Log.d(TAG, "Turning " + (turnOn ? "on" : "off") + ": " + selectedEntityId);
+        HomeAssistantApiClient.ApiCallback<Boolean> callback = new HomeAssistantApiClient.ApiCallback<Boolean>() {
             @Override
             public void onSuccess(Boolean result) {
-                Log.d(TAG, "Device toggle successful");
-                // Update state after a short delay to allow HA to process
-                mainHandler.postDelayed(() -> updateDeviceState(), 1000);
+                workerHandler.post(() -> {
+                    Boolean next = toggleState.onCallSucceeded();
+                    if (next != null) {
+                        sendToggle(next);
+                        return;
+                    }
+                    Log.d(TAG, "Device toggle successful");
+                    // The WebSocket feed usually confirms first; otherwise ask shortly
+                    if (!pushActive) {
+                        workerHandler.postDelayed(() -> refreshDeviceState(), TOGGLE_REFRESH_DELAY_MS);
+                    }
+                    workerHandler.removeCallbacks(confirmTimeoutRunnable);
+                    workerHandler.postDelayed(confirmTimeoutRunnable, TOGGLE_CONFIRM_TIMEOUT_MS);
+                });
             }
 
             @Override
-            public void onError(String error) {
+            public void onError(ApiError error) {
                 Log.e(TAG, "Failed to toggle device: " + error);
+                workerHandler.post(() -> {
+                    toggleState.onCallFailed();
+                    isDeviceOn = toggleState.isDisplayedOn();
+                    if (error.isTerminal()) {
+                        onTerminalError(error);
+                    } else {
+                        showRollback();
+                    }
+                });
             }
-        });
+        };
+
+        if (turnOn) {
+            apiClient.turnOnEntity(selectedEntityId, callback);
+        } else {
+            apiClient.turnOffEntity(selectedEntityId, callback);
+        }
     }
 
-    private final Handler serviceHandler = new Handler(Looper.getMainLooper()) {
+    private class ServiceHandler extends Handler {
+        ServiceHandler(Looper looper) {
+            super(looper);
+        }
+
         @Override
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case GlyphToy.MSG_GLYPH_TOY: {
                     Bundle bundle = msg.getData();
                     String event = bundle.getString(GlyphToy.MSG_GLYPH_TOY_DATA);
-                    Log.d(TAG, "Received event: " + event);
 
                     if (GlyphToy.EVENT_CHANGE.equals(event)) {
                         // Long press - toggle the device
-                        toggleDevice();
+                        toggleDevice(msg.getWhen());
                     } else if (GlyphToy.EVENT_AOD.equals(event)) {
-                        // AOD update - refresh device state
-                        updateDeviceState();
+                        inAod = true;
+                        updatePlayback();
+                        updatePolling();
+                        // AOD ticks replace the poll timer (the WebSocket feed already keeps it current)
+                        if (pushActive) {
+                            displayCurrentState();
+                        } else {
+                            updateDeviceState();
+                        }
                     }
                     break;
                 }
@@ -379,19 +777,21 @@ public class HomeAssistantToyService extends Service {
                     super.handleMessage(msg);
             }
         }
-    };
-
-    private final Messenger serviceMessenger = new Messenger(serviceHandler);
+    }
 
     // Method to update sprites from your JSON data
     public void updateSprites(Bitmap newOnSprite, Bitmap newOffSprite) {
-        if (newOnSprite != null) {
-            this.onSprite = newOnSprite;
-        }
-        if (newOffSprite != null) {
-            this.offSprite = newOffSprite;
-        }
-        // Refresh display with new sprites
-        displayCurrentState();
+        workerHandler.post(() -> {
+            if (!initialized) return;
+            frameCache.invalidate();
+            if (newOnSprite != null) {
+                this.onAnimation = stillAnimation(newOnSprite);
+            }
+            if (newOffSprite != null) {
+                this.offAnimation = stillAnimation(newOffSprite);
+            }
+            // Refresh display with new sprites
+            displayCurrentState();
+        });
     }
 }
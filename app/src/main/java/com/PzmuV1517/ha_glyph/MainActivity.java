@@ -1,6 +1,7 @@
 package com.PzmuV1517.ha_glyph;
 
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -17,19 +18,31 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.PzmuV1517.ha_glyph.api.ApiError;
+import com.PzmuV1517.ha_glyph.api.EndpointSelector;
 import com.PzmuV1517.ha_glyph.api.HomeAssistantApiClient;
+import com.PzmuV1517.ha_glyph.model.EntityStore;
 import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.DebouncedSearch;
+import com.PzmuV1517.ha_glyph.util.EntityCatalogCache;
+import com.PzmuV1517.ha_glyph.util.Metrics;
 import com.PzmuV1517.ha_glyph.util.PreferencesManager;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class MainActivity extends AppCompatActivity {
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
     private EditText etUrl, etToken, etSearch; // added etSearch
     private Button btnConnect, btnDisconnect;
     private TextView btnPrivacy;
-    private TextView tvStatus, tvSelectedDevice;
+    private TextView tvStatus, tvSelectedDevice, tvMetrics;
     private RecyclerView rvDevices;
     private ProgressBar progressBar;
 
@@ -37,6 +50,12 @@ public class MainActivity extends AppCompatActivity {
     private PreferencesManager prefsManager;
     private DeviceAdapter deviceAdapter;
     private Handler mainHandler;
+    private EntityCatalogCache catalogCache;
+    private DebouncedSearch deviceSearch;
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private int loadGeneration;
+    private boolean showingCachedDevices;
+    private EntityStore loadingDevices = EntityStore.EMPTY; // the list being streamed in
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,6 +67,32 @@ public class MainActivity extends AppCompatActivity {
         loadSavedConfiguration();
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        apiClient.preconnect();
+        showMetrics();
+    }
+
+    // Debug builds only: what the toy service and API client have recorded in this process
+    private void showMetrics() {
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) return;
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        Metrics.get().dump(writer);
+        writer.flush();
+        tvMetrics.setText(out.toString().trim());
+        tvMetrics.setVisibility(out.getBuffer().length() > 0 ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loadGeneration++;
+        ioExecutor.shutdown();
+        deviceSearch.release();
+    }
+
     private void initViews() {
         etUrl = findViewById(R.id.et_url);
         etToken = findViewById(R.id.et_token);
@@ -57,11 +102,12 @@ public class MainActivity extends AppCompatActivity {
         btnPrivacy = findViewById(R.id.tv_privacy_link);
         tvStatus = findViewById(R.id.tv_status);
         tvSelectedDevice = findViewById(R.id.tv_selected_device);
+        tvMetrics = findViewById(R.id.tv_metrics);
         rvDevices = findViewById(R.id.rv_devices);
         progressBar = findViewById(R.id.progress_bar);
 
         rvDevices.setLayoutManager(new LinearLayoutManager(this));
-        deviceAdapter = new DeviceAdapter(new ArrayList<>(), this::onDeviceSelected);
+        deviceAdapter = new DeviceAdapter(this::onDeviceSelected);
         rvDevices.setAdapter(deviceAdapter);
 
         btnConnect.setOnClickListener(v -> connectToHomeAssistant());
@@ -75,7 +121,7 @@ public class MainActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                deviceAdapter.filter(s.toString());
+                deviceSearch.query(s.toString());
             }
 
             @Override
@@ -87,6 +133,9 @@ public class MainActivity extends AppCompatActivity {
         apiClient = new HomeAssistantApiClient();
         prefsManager = new PreferencesManager(this);
         mainHandler = new Handler(Looper.getMainLooper());
+        catalogCache = new EntityCatalogCache(this);
+        deviceSearch = new DebouncedSearch(mainHandler, SEARCH_DEBOUNCE_MS,
+                (query, devices, rows) -> deviceAdapter.showSearchResults(devices, rows));
     }
 
     private void loadSavedConfiguration() {
@@ -109,7 +158,7 @@ public class MainActivity extends AppCompatActivity {
         }
 
         if (prefsManager.isConfigured()) {
-            apiClient.configure(savedUrl, savedToken);
+            apiClient.configure(prefsManager.getHomeAssistantUrls(), savedToken);
             updateUIState(true);
             loadDevices();
         } else {
@@ -118,29 +167,29 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void connectToHomeAssistant() {
-        String url = etUrl.getText().toString().trim();
+        // One or more URLs of the same server, e.g. "192.168.1.5:8123, https://x.ui.nabu.casa";
+        // http:// is added where no protocol is given
+        List<String> urls = EndpointSelector.parseUrls(etUrl.getText().toString());
         String token = etToken.getText().toString().trim();
 
-        if (url.isEmpty() || token.isEmpty()) {
+        if (urls.isEmpty() || token.isEmpty()) {
             Toast.makeText(this, "Please enter both URL and token", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        // Add http:// if no protocol specified
-        final String finalUrl = url.startsWith("http://") || url.startsWith("https://") ? url : "http://" + url;
         final String finalToken = token;
 
         progressBar.setVisibility(View.VISIBLE);
         tvStatus.setText("Connecting...");
 
-        apiClient.configure(finalUrl, finalToken);
+        apiClient.configure(urls, finalToken);
 
         apiClient.testConnection(new HomeAssistantApiClient.ApiCallback<Boolean>() {
             @Override
             public void onSuccess(Boolean result) {
                 mainHandler.post(() -> {
                     progressBar.setVisibility(View.GONE);
-                    prefsManager.setHomeAssistantUrl(finalUrl);
+                    prefsManager.setHomeAssistantUrls(urls);
                     prefsManager.setHomeAssistantToken(finalToken);
                     updateUIState(true);
                     loadDevices();
@@ -149,7 +198,8 @@ public class MainActivity extends AppCompatActivity {
             }
 
             @Override
-            public void onError(String error) {
+            public void onError(ApiError apiError) {
+                String error = apiError.getMessage();
                 mainHandler.post(() -> {
                     progressBar.setVisibility(View.GONE);
                     tvStatus.setText("Connection failed: " + error);
@@ -161,43 +211,87 @@ public class MainActivity extends AppCompatActivity {
 
     private void disconnectFromHomeAssistant() {
         prefsManager.clearConfiguration();
-        deviceAdapter.updateDevices(new ArrayList<>());
+        loadGeneration++;
+        runOnIo(catalogCache::clear);
+        showDevices(EntityStore.EMPTY);
         updateUIState(false);
         tvSelectedDevice.setText("No device selected");
         Toast.makeText(this, "Disconnected", Toast.LENGTH_SHORT).show();
     }
 
     private void loadDevices() {
+        final int generation = ++loadGeneration;
+        final String serverUrl = prefsManager.getHomeAssistantUrl();
         progressBar.setVisibility(View.VISIBLE);
         tvStatus.setText("Loading devices...");
 
-        apiClient.getStates(new HomeAssistantApiClient.ApiCallback<List<HomeAssistantEntity>>() {
+        // Show the last known list straight away, then replace it with the fresh one
+        runOnIo(() -> {
+            EntityStore cached = serverUrl != null ? catalogCache.load(serverUrl) : null;
+            mainHandler.post(() -> {
+                if (generation != loadGeneration) return;
+                showingCachedDevices = cached != null && cached.size() > 0;
+                if (showingCachedDevices) {
+                    showDevices(cached);
+                    tvStatus.setText("Showing " + cached.size() + " devices, refreshing...");
+                } else {
+                    showDevices(EntityStore.EMPTY);
+                }
+                streamDevices(generation, serverUrl);
+            });
+        });
+    }
+
+    private void streamDevices(int generation, String serverUrl) {
+        loadingDevices = EntityStore.EMPTY;
+
+        // Only controllable entities are decoded; everything else is skipped while parsing
+        apiClient.streamStates(HomeAssistantEntity.CONTROLLABLE_DOMAINS, new HomeAssistantApiClient.StatesStreamCallback() {
             @Override
-            public void onSuccess(List<HomeAssistantEntity> entities) {
+            public void onEntities(List<HomeAssistantEntity> batch) {
                 mainHandler.post(() -> {
-                    progressBar.setVisibility(View.GONE);
+                    if (generation != loadGeneration) return;
+                    loadingDevices = loadingDevices.append(batch);
+                    // While the cached list is up, keep it until the fresh one is complete
+                    if (!showingCachedDevices) {
+                        showDevices(loadingDevices);
+                    }
+                });
+            }
 
-                    // Filter for controllable entities (lights, switches, etc.)
-                    List<HomeAssistantEntity> controllableEntities = entities.stream()
-                            .filter(entity -> {
-                                String entityId = entity.getEntityId();
-                                return entityId.startsWith("light.") ||
-                                       entityId.startsWith("switch.") ||
-                                       entityId.startsWith("fan.") ||
-                                       entityId.startsWith("input_boolean.") ||
-                                       entityId.startsWith("automation.");
-                            })
-                            .collect(Collectors.toList());
-
-                    deviceAdapter.updateDevices(controllableEntities);
-                    tvStatus.setText("Found " + controllableEntities.size() + " controllable devices");
+            @Override
+            public void onComplete(int total) {
+                mainHandler.post(() -> {
+                    if (generation != loadGeneration) return;
+                    EntityStore fresh = loadingDevices;
+                    if (serverUrl != null) {
+                        runOnIo(() -> {
+                            try {
+                                catalogCache.save(serverUrl, fresh);
+                            } catch (IOException e) {
+                                catalogCache.clear();
+                            }
+                        });
+                    }
+                    progressBar.setVisibility(View.GONE);
+                    if (showingCachedDevices) {
+                        showDevices(fresh);
+                        showingCachedDevices = false;
+                    }
+                    tvStatus.setText("Found " + total + " controllable devices");
                 });
             }
 
             @Override
-            public void onError(String error) {
+            public void onError(ApiError apiError) {
+                String error = apiError.getMessage();
                 mainHandler.post(() -> {
+                    if (generation != loadGeneration) return;
                     progressBar.setVisibility(View.GONE);
+                    if (showingCachedDevices) {
+                        tvStatus.setText("Showing saved devices, refresh failed: " + error);
+                        return;
+                    }
                     tvStatus.setText("Failed to load devices: " + error);
                     Toast.makeText(MainActivity.this, "Failed to load devices: " + error, Toast.LENGTH_LONG).show();
                 });
@@ -205,6 +299,19 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void showDevices(EntityStore devices) {
+        deviceAdapter.setDevices(devices);
+        deviceSearch.setDevices(devices);
+    }
+
+    private void runOnIo(Runnable task) {
+        try {
+            ioExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Activity already destroyed
+        }
+    }
+
     private void onDeviceSelected(HomeAssistantEntity entity) {
         prefsManager.setSelectedEntity(entity.getEntityId(), entity.getFriendlyName());
         tvSelectedDevice.setText("Selected: " + entity.getFriendlyName());
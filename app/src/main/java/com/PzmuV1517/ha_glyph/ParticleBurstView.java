@@ -0,0 +1,123 @@
+package com.PzmuV1517.ha_glyph;
+
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.OvershootInterpolator;
+
+import com.PzmuV1517.ha_glyph.util.ParticleBurst;
+
+/**
+ * Overlay that draws the selection burst near the bottom-end corner: a pop-in of the
+ * indicator plus particles flying out of it, all on one canvas from a single animator.
+ * Everything is allocated up front; {@link #burst()} can be called on every selection.
+ */
+public class ParticleBurstView extends View {
+    private static final int PARTICLE_COUNT = 10;
+    private static final long PARTICLE_DURATION_MS = 450;
+    private static final long PARTICLE_STAGGER_MS = 15;
+    private static final long POP_DURATION_MS = 300;
+
+    private final ParticleBurst particles;
+    private final Paint fillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final OvershootInterpolator popInterpolator = new OvershootInterpolator();
+    private final ValueAnimator animator;
+    private final float particleRadius;
+    private final float originInset;
+    private View indicator;
+
+    public ParticleBurstView(Context context) {
+        this(context, null);
+    }
+
+    public ParticleBurstView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        particles = new ParticleBurst(PARTICLE_COUNT, dp(36), PARTICLE_DURATION_MS, PARTICLE_STAGGER_MS, System.nanoTime());
+        particleRadius = dp(3);
+        originInset = dp(15); // centre of the indicator dot
+
+        fillPaint.setStyle(Paint.Style.FILL);
+        fillPaint.setColor(0xFF4CAF50); // green
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(dp(1));
+        strokePaint.setColor(0xFF2E7D32);
+
+        animator = ValueAnimator.ofFloat(0f, 1f);
+        animator.setDuration(particles.getDurationMs());
+        animator.setInterpolator(new LinearInterpolator());
+        animator.addUpdateListener(animation -> onFrame(animation.getCurrentPlayTime()));
+        setWillNotDraw(false);
+    }
+
+    /** View that pops in (scale/alpha) at the start of each burst, e.g. the selected dot. */
+    public void setIndicator(View indicator) {
+        this.indicator = indicator;
+    }
+
+    public void burst() {
+        animator.cancel();
+        particles.start();
+        if (indicator != null) {
+            indicator.setVisibility(View.VISIBLE);
+            applyPop(0f);
+        }
+        animator.start();
+    }
+
+    /** Stops any burst in progress and leaves the indicator fully shown. */
+    public void cancel() {
+        if (!animator.isRunning()) return;
+        animator.cancel();
+        if (indicator != null) applyPop(1f);
+        invalidate();
+    }
+
+    private void onFrame(long elapsedMs) {
+        particles.update(elapsedMs);
+        if (indicator != null) applyPop(Math.min(1f, elapsedMs / (float) POP_DURATION_MS));
+        invalidate();
+    }
+
+    private void applyPop(float t) {
+        float scale = popInterpolator.getInterpolation(t);
+        indicator.setScaleX(scale);
+        indicator.setScaleY(scale);
+        indicator.setAlpha(t);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (!animator.isRunning()) return;
+        // Particles fly up and to the left, away from the bottom-end corner
+        float originX = getLayoutDirection() == LAYOUT_DIRECTION_RTL ? originInset : getWidth() - originInset;
+        float direction = getLayoutDirection() == LAYOUT_DIRECTION_RTL ? -1f : 1f;
+        float originY = getHeight() - originInset;
+        for (int i = 0; i < particles.getCount(); i++) {
+            int alpha = (int) (particles.getAlpha(i) * 255);
+            if (alpha <= 0) continue;
+            float cx = originX - direction * particles.getX(i);
+            float cy = originY - particles.getY(i);
+            float r = particleRadius * particles.getScale(i);
+            fillPaint.setAlpha(alpha);
+            strokePaint.setAlpha(alpha);
+            canvas.drawCircle(cx, cy, r, fillPaint);
+            canvas.drawCircle(cx, cy, r, strokePaint);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancel();
+        super.onDetachedFromWindow();
+    }
+
+    private float dp(float v) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, v, getResources().getDisplayMetrics());
+    }
+}
@@ -0,0 +1,78 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Handler;
+
+/**
+ * {@link Connectivity} from the default network's capabilities. Changes are delivered on
+ * the given handler's thread, which is also the only thread that should read the state.
+ */
+public class AndroidConnectivity implements Connectivity {
+    private final ConnectivityManager connectivityManager;
+    private final Handler handler;
+    private Listener listener;
+    private boolean validated;
+    private boolean local;
+
+    private final ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            update(capabilities);
+        }
+
+        @Override
+        public void onLost(Network network) {
+            update(null);
+        }
+    };
+
+    public AndroidConnectivity(Context context, Handler handler) {
+        this.connectivityManager = context.getSystemService(ConnectivityManager.class);
+        this.handler = handler;
+        Network active = connectivityManager.getActiveNetwork();
+        read(active != null ? connectivityManager.getNetworkCapabilities(active) : null);
+    }
+
+    @Override
+    public boolean hasValidatedNetwork() {
+        return validated;
+    }
+
+    @Override
+    public boolean hasLocalNetwork() {
+        return local;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        connectivityManager.registerDefaultNetworkCallback(networkCallback, handler);
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+        try {
+            connectivityManager.unregisterNetworkCallback(networkCallback);
+        } catch (IllegalArgumentException ignore) {
+            // never registered
+        }
+    }
+
+    private void update(NetworkCapabilities capabilities) {
+        read(capabilities);
+        if (listener != null) listener.onConnectivityChanged();
+    }
+
+    private void read(NetworkCapabilities capabilities) {
+        validated = capabilities != null
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+        local = capabilities != null
+                && (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)
+                || capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET));
+    }
+}
@@ -0,0 +1,90 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.os.Handler;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs device searches on a background thread once typing pauses. Every new query or
+ * device list bumps a generation; work from an older generation stops early and its
+ * results are never delivered. The index is rebuilt lazily, only when a query runs against
+ * a device snapshot it hasn't seen. Call from the main thread; results arrive on it.
+ */
+public class DebouncedSearch {
+    public interface ResultListener {
+        /** @param rows ranked matching rows of {@code devices}, or null when the query was cleared */
+        void onResults(String query, EntityStore devices, int[] rows);
+    }
+
+    private final Handler mainHandler;
+    private final long debounceMs;
+    private final ResultListener listener;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Runnable submitRunnable = this::submit;
+
+    private EntityStore devices = EntityStore.EMPTY;
+    private String query;
+
+    // Only touched on the executor thread
+    private EntitySearchIndex index;
+
+    public DebouncedSearch(Handler mainHandler, long debounceMs, ResultListener listener) {
+        this.mainHandler = mainHandler;
+        this.debounceMs = debounceMs;
+        this.listener = listener;
+    }
+
+    public void setDevices(EntityStore devices) {
+        this.devices = devices;
+        if (query != null) schedule();
+    }
+
+    public void query(String text) {
+        String normalized = EntitySearchIndex.normalize(text);
+        if (normalized.isEmpty()) {
+            query = null;
+            generation.incrementAndGet();
+            mainHandler.removeCallbacks(submitRunnable);
+            listener.onResults(null, devices, null);
+        } else if (!normalized.equals(query)) {
+            query = normalized;
+            schedule();
+        }
+    }
+
+    public void release() {
+        generation.incrementAndGet();
+        mainHandler.removeCallbacks(submitRunnable);
+        executor.shutdownNow();
+    }
+
+    private void schedule() {
+        generation.incrementAndGet();
+        mainHandler.removeCallbacks(submitRunnable);
+        mainHandler.postDelayed(submitRunnable, debounceMs);
+    }
+
+    private void submit() {
+        final int current = generation.get();
+        final String q = query;
+        final EntityStore snapshot = devices;
+        if (q == null) return;
+
+        executor.execute(() -> {
+            if (current != generation.get()) return;
+            if (index == null || index.getStore() != snapshot) {
+                index = new EntitySearchIndex(snapshot);
+            }
+            int[] rows = index.search(q, () -> current != generation.get());
+            if (rows == null) return;
+            mainHandler.post(() -> {
+                if (current == generation.get()) listener.onResults(q, snapshot, rows);
+            });
+        });
+    }
+}
@@ -0,0 +1,152 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.content.Context;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Last known list of controllable entities, persisted so the device list can be shown
+ * before /api/states answers. The file is small and read in one shot; it is tied to the
+ * server it came from and ignored after a format change.
+ *
+ * Layout: magic "HAEC", u8 version, UTF server URL, u16 domain count + UTF domains,
+ * u16 entity count, then per entity u8 domain index, UTF object id (the entity_id after
+ * the '.'), UTF friendly name ("" when it is the entity_id) and UTF state.
+ */
+public class EntityCatalogCache {
+    public static final int VERSION = 1;
+    public static final int MAX_ENTITIES = 2000;
+    private static final int MAX_FILE_BYTES = 512 * 1024;
+    private static final int MAX_DOMAINS = 255;
+    private static final byte[] MAGIC = {'H', 'A', 'E', 'C'};
+    private static final String FILE_NAME = "entity_catalog.bin";
+
+    private final File file;
+
+    public EntityCatalogCache(Context context) {
+        this(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    EntityCatalogCache(File file) {
+        this.file = file;
+    }
+
+    /** Returns the cached entities for this server, or null if there is no usable cache. */
+    public EntityStore load(String serverUrl) {
+        if (!file.isFile() || file.length() > MAX_FILE_BYTES) return null;
+        try {
+            return decode(Files.readAllBytes(file.toPath()), serverUrl);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Replaces the cache; entities beyond {@link #MAX_ENTITIES} are not stored. */
+    public void save(String serverUrl, EntityStore entities) throws IOException {
+        byte[] data = encode(serverUrl, entities);
+        if (data.length > MAX_FILE_BYTES) {
+            clear();
+            return;
+        }
+
+        // Write beside the cache and rename so a crash never leaves a half-written file
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    public void clear() {
+        file.delete();
+    }
+
+    static byte[] encode(String serverUrl, EntityStore entities) throws IOException {
+        int count = Math.min(entities.size(), MAX_ENTITIES);
+        List<String> domains = new ArrayList<>();
+        int[] domainIndex = new int[count];
+        int stored = 0;
+        for (int i = 0; i < count; i++) {
+            String domain = entities.getDomain(i);
+            if (domain.isEmpty()) {
+                domainIndex[i] = -1;
+                continue;
+            }
+            int index = domains.indexOf(domain);
+            if (index < 0) {
+                if (domains.size() == MAX_DOMAINS) {
+                    domainIndex[i] = -1;
+                    continue;
+                }
+                index = domains.size();
+                domains.add(domain);
+            }
+            domainIndex[i] = index;
+            stored++;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + count * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeUTF(serverUrl);
+        out.writeShort(domains.size());
+        for (String domain : domains) {
+            out.writeUTF(domain);
+        }
+        out.writeShort(stored);
+        for (int i = 0; i < count; i++) {
+            if (domainIndex[i] < 0) continue;
+            String entityId = entities.getEntityId(i);
+            String friendlyName = entities.getFriendlyName(i);
+            out.writeByte(domainIndex[i]);
+            out.writeUTF(entityId.substring(domains.get(domainIndex[i]).length() + 1));
+            out.writeUTF(entityId.equals(friendlyName) ? "" : friendlyName);
+            out.writeUTF(entities.getState(i));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static EntityStore decode(byte[] data, String serverUrl) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        for (byte b : MAGIC) {
+            if (in.readByte() != b) return null;
+        }
+        if (in.readUnsignedByte() != VERSION) return null;
+        if (!in.readUTF().equals(serverUrl)) return null;
+
+        String[] domains = new String[in.readUnsignedShort()];
+        for (int i = 0; i < domains.length; i++) {
+            domains[i] = in.readUTF();
+        }
+
+        int count = in.readUnsignedShort();
+        if (count > MAX_ENTITIES) return null;
+        EntityStore.Builder entities = new EntityStore.Builder();
+        for (int i = 0; i < count; i++) {
+            int domainIndex = in.readUnsignedByte();
+            if (domainIndex >= domains.length) throw new IOException("Bad domain index " + domainIndex);
+            String entityId = domains[domainIndex] + "." + in.readUTF();
+            String friendlyName = in.readUTF();
+            String state = in.readUTF();
+            entities.add(entityId, state, friendlyName.isEmpty() ? null : friendlyName);
+        }
+        return entities.build();
+    }
+}
@@ -0,0 +1,79 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import com.nothing.ketchum.GlyphMatrixFrame;
+import com.nothing.ketchum.GlyphMatrixObject;
+
+/**
+ * Renders each (sprite, brightness, scale) combination through the Glyph SDK once and keeps
+ * the resulting matrix buffer, so repeated displays are a lookup instead of a full
+ * Builder/render pass. Lookups allocate nothing; the returned arrays must not be modified.
+ */
+public class GlyphFrameCache {
+    private static final int MAX_ENTRIES = 8;
+
+    private final Context context;
+    private final Bitmap[] sprites = new Bitmap[MAX_ENTRIES];
+    private final int[] brightnesses = new int[MAX_ENTRIES];
+    private final int[] scales = new int[MAX_ENTRIES];
+    private final int[][] frames = new int[MAX_ENTRIES][];
+    private int size = 0;
+    private int nextEvict = 0;
+    private final Metrics.Histogram renderTime = Metrics.get().histogram("glyph.render.us", Metrics.RENDER_US_BUCKETS);
+
+    public GlyphFrameCache(Context context) {
+        this.context = context;
+    }
+
+    public int[] get(Bitmap sprite, int brightness, int scale) {
+        if (sprite == null) return null;
+
+        for (int i = 0; i < size; i++) {
+            if (sprites[i] == sprite && brightnesses[i] == brightness && scales[i] == scale) {
+                return frames[i];
+            }
+        }
+
+        int[] frame = render(sprite, brightness, scale);
+        int slot;
+        if (size < MAX_ENTRIES) {
+            slot = size++;
+        } else {
+            slot = nextEvict;
+            nextEvict = (nextEvict + 1) % MAX_ENTRIES;
+        }
+        sprites[slot] = sprite;
+        brightnesses[slot] = brightness;
+        scales[slot] = scale;
+        frames[slot] = frame;
+        return frame;
+    }
+
+    /** Drop every rendered frame, e.g. after the sprite bitmaps were swapped. */
+    public void invalidate() {
+        for (int i = 0; i < size; i++) {
+            sprites[i] = null;
+            frames[i] = null;
+        }
+        size = 0;
+        nextEvict = 0;
+    }
+
+    // One Builder/render pass through the Glyph SDK, for a miss in get()
+    private int[] render(Bitmap sprite, int brightness, int scale) {
+        long start = System.nanoTime();
+        GlyphMatrixObject matrixObject = new GlyphMatrixObject.Builder()
+                .setImageSource(sprite)
+                .setPosition(0, 0)
+                .setScale(scale)
+                .setBrightness(brightness)
+                .build();
+
+        GlyphMatrixFrame frame = new GlyphMatrixFrame.Builder().addTop(matrixObject).build(context);
+        int[] rendered = frame.render();
+        renderTime.record((System.nanoTime() - start) / 1000);
+        return rendered;
+    }
+}
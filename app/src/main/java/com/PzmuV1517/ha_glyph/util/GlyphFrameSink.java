@@ -0,0 +1,135 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Sits in front of GlyphMatrixManager.setMatrixFrame and only forwards frames that
+ * actually differ from what is on the matrix. Identical frames are dropped, bursts are
+ * collapsed to the newest frame within the minimum push interval, and the last frame is
+ * re-pushed on a keep-alive interval in case the matrix was cleared underneath us.
+ * Must be used from the thread of the supplied handler.
+ */
+public class GlyphFrameSink {
+    private static final String TAG = "GlyphFrameSink";
+    private static final int MATRIX_PIXELS = 25 * 25;
+
+    public interface FrameTarget {
+        void push(int[] frame) throws Exception;
+    }
+
+    private final FrameTarget target;
+    private final Handler handler;
+    private final long minPushIntervalMs;
+    private final long keepAliveIntervalMs;
+
+    private final int[] lastFrame = new int[MATRIX_PIXELS];
+    private final int[] pendingFrame = new int[MATRIX_PIXELS];
+    private boolean hasLastFrame = false;
+    private boolean hasPendingFrame = false;
+    private int lastFrameHash;
+    private long lastPushTime;
+
+    private final Metrics.Counter pushedFrames = Metrics.get().counter("glyph.frames.pushed");
+    private final Metrics.Counter suppressedFrames = Metrics.get().counter("glyph.frames.suppressed");
+    private final Metrics.Counter coalescedFrames = Metrics.get().counter("glyph.frames.coalesced");
+    private final Metrics.Counter keepAlivePushes = Metrics.get().counter("glyph.frames.keepAlive");
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override public void run() {
+            if (!hasPendingFrame) return;
+            hasPendingFrame = false;
+            if (isSameAsLast(pendingFrame, Arrays.hashCode(pendingFrame))) {
+                suppressedFrames.increment();
+                return;
+            }
+            push(pendingFrame);
+        }
+    };
+
+    private final Runnable keepAliveRunnable = new Runnable() {
+        @Override public void run() {
+            if (!hasLastFrame) return;
+            keepAlivePushes.increment();
+            push(lastFrame);
+        }
+    };
+
+    /**
+     * @param minPushIntervalMs   frames arriving closer together than this are coalesced
+     * @param keepAliveIntervalMs re-push the current frame this often; 0 disables keep-alive
+     */
+    public GlyphFrameSink(FrameTarget target, Handler handler, long minPushIntervalMs, long keepAliveIntervalMs) {
+        this.target = target;
+        this.handler = handler;
+        this.minPushIntervalMs = minPushIntervalMs;
+        this.keepAliveIntervalMs = keepAliveIntervalMs;
+    }
+
+    public void submit(int[] frame) {
+        if (frame == null || frame.length != MATRIX_PIXELS) return;
+
+        if (hasPendingFrame) {
+            // A flush is already scheduled; the newer frame simply replaces the queued one
+            System.arraycopy(frame, 0, pendingFrame, 0, MATRIX_PIXELS);
+            coalescedFrames.increment();
+            return;
+        }
+
+        if (isSameAsLast(frame, Arrays.hashCode(frame))) {
+            suppressedFrames.increment();
+            return;
+        }
+
+        long earliest = lastPushTime + minPushIntervalMs;
+        if (hasLastFrame && SystemClock.uptimeMillis() < earliest) {
+            System.arraycopy(frame, 0, pendingFrame, 0, MATRIX_PIXELS);
+            hasPendingFrame = true;
+            handler.postAtTime(flushRunnable, earliest);
+            return;
+        }
+
+        push(frame);
+    }
+
+    /** Forget the last frame so the next submit always reaches the matrix (e.g. after a service reconnect). */
+    public void reset() {
+        handler.removeCallbacks(flushRunnable);
+        handler.removeCallbacks(keepAliveRunnable);
+        hasPendingFrame = false;
+        hasLastFrame = false;
+    }
+
+    public void release() {
+        reset();
+    }
+
+    private boolean isSameAsLast(int[] frame, int hash) {
+        return hasLastFrame && hash == lastFrameHash && Arrays.equals(frame, lastFrame);
+    }
+
+    private void push(int[] frame) {
+        if (frame != lastFrame) {
+            System.arraycopy(frame, 0, lastFrame, 0, MATRIX_PIXELS);
+            lastFrameHash = Arrays.hashCode(lastFrame);
+        }
+        hasLastFrame = true;
+        lastPushTime = SystemClock.uptimeMillis();
+        try {
+            target.push(lastFrame);
+            pushedFrames.increment();
+        } catch (Exception e) {
+            // Leave the frame marked as unsent so the next submit retries it
+            hasLastFrame = false;
+            Log.e(TAG, "Failed to push frame", e);
+        }
+
+        handler.removeCallbacks(keepAliveRunnable);
+        if (keepAliveIntervalMs > 0 && hasLastFrame) {
+            handler.postDelayed(keepAliveRunnable, keepAliveIntervalMs);
+        }
+    }
+}
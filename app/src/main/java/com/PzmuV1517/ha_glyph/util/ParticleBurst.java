@@ -0,0 +1,88 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.util.Random;
+
+/**
+ * Particle state for the selection burst: each particle flies out from the origin along a
+ * slightly randomized angle, shrinking and fading in then out, starting a little after the
+ * previous one. All state lives in arrays sized at construction, so starting and stepping
+ * a burst allocate nothing.
+ */
+public class ParticleBurst {
+    private final int count;
+    private final float radius;
+    private final long particleDurationMs;
+    private final long staggerMs;
+    private final Random random;
+
+    private final float[] targetX;
+    private final float[] targetY;
+    private final float[] x;
+    private final float[] y;
+    private final float[] scale;
+    private final float[] alpha;
+
+    public ParticleBurst(int count, float radius, long particleDurationMs, long staggerMs, long seed) {
+        this.count = count;
+        this.radius = radius;
+        this.particleDurationMs = particleDurationMs;
+        this.staggerMs = staggerMs;
+        this.random = new Random(seed);
+        targetX = new float[count];
+        targetY = new float[count];
+        x = new float[count];
+        y = new float[count];
+        scale = new float[count];
+        alpha = new float[count];
+    }
+
+    /** Picks new directions and resets every particle to the origin. */
+    public void start() {
+        for (int i = 0; i < count; i++) {
+            double angle = (2 * Math.PI / count) * i + random.nextFloat() * 0.5; // slight randomness
+            targetX[i] = (float) (Math.cos(angle) * radius);
+            targetY[i] = (float) (Math.sin(angle) * radius);
+        }
+        update(0);
+    }
+
+    /** Moves every particle to where it is {@code elapsedMs} into the burst. Returns false once all are done. */
+    public boolean update(long elapsedMs) {
+        boolean active = false;
+        for (int i = 0; i < count; i++) {
+            float t = (elapsedMs - i * staggerMs) / (float) particleDurationMs;
+            if (t < 0f) t = 0f;
+            if (t < 1f) active = true; else t = 1f;
+            float eased = t * t; // accelerate
+            x[i] = targetX[i] * eased;
+            y[i] = targetY[i] * eased;
+            scale[i] = 1f - 0.8f * eased;
+            alpha[i] = elapsedMs < i * staggerMs ? 0f : (eased < 0.5f ? eased * 2f : (1f - eased) * 2f);
+        }
+        return active;
+    }
+
+    public long getDurationMs() {
+        return particleDurationMs + (count - 1) * staggerMs;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public float getX(int i) {
+        return x[i];
+    }
+
+    public float getY(int i) {
+        return y[i];
+    }
+
+    public float getScale(int i) {
+        return scale[i];
+    }
+
+    public float getAlpha(int i) {
+        return alpha[i];
+    }
+}
@@ -3,6 +3,10 @@ package com.PzmuV1517.ha_glyph.util;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import com.PzmuV1517.ha_glyph.api.EndpointSelector;
+
+import java.util.List;
+
 public class PreferencesManager {
     private static final String PREFS_NAME = "ha_glyph_prefs";
     private static final String KEY_HA_URL = "ha_url";
@@ -24,6 +28,15 @@ public class PreferencesManager {
         return prefs.getString(KEY_HA_URL, null);
     }
 
+    /** Base URLs of the same server, best first, e.g. a LAN address then a remote one. */
+    public void setHomeAssistantUrls(List<String> urls) {
+        setHomeAssistantUrl(String.join(", ", urls));
+    }
+
+    public List<String> getHomeAssistantUrls() {
+        return EndpointSelector.parseUrls(getHomeAssistantUrl());
+    }
+
     public void setHomeAssistantToken(String token) {
         prefs.edit().putString(KEY_HA_TOKEN, token).apply();
     }
@@ -0,0 +1,119 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Plays a {@link SpriteAnimation} into a {@link GlyphFrameSink} from a single handler callback.
+ * Frame deadlines are accumulated from the sprite durations rather than from the time a
+ * frame was actually shown, so playback does not drift; when the handler runs so late that
+ * whole frames have passed, those frames are skipped and counted as dropped.
+ * Must be used from the thread of the supplied handler; nothing is allocated per frame.
+ */
+public class SpriteAnimationPlayer {
+    private static final long LATE_THRESHOLD_MS = 8;
+    private static final long RESYNC_AFTER_MS = 5000;
+
+    private final GlyphFrameSink sink;
+    private final Handler handler;
+
+    private SpriteAnimation animation;
+    private int frameIndex;
+    private long frameDeadline; // uptime at which frameIndex is due
+    private boolean paused = false;
+
+    private final Metrics.Counter framesShown = Metrics.get().counter("glyph.animation.shown");
+    private final Metrics.Counter droppedFrames = Metrics.get().counter("glyph.animation.dropped");
+    private final Metrics.Counter lateFrames = Metrics.get().counter("glyph.animation.late");
+
+    private final Runnable tickRunnable = new Runnable() {
+        @Override public void run() {
+            advance();
+        }
+    };
+
+    public SpriteAnimationPlayer(GlyphFrameSink sink, Handler handler) {
+        this.sink = sink;
+        this.handler = handler;
+    }
+
+    /** Switch to an animation; re-playing the current one keeps its position. */
+    public void play(SpriteAnimation newAnimation) {
+        if (newAnimation == null) return;
+        if (newAnimation == animation) {
+            if (!animation.isAnimated() || paused) {
+                // Still image (or paused): make sure it is what the sink holds
+                sink.submit(animation.getFrame(frameIndex));
+            }
+            return;
+        }
+
+        handler.removeCallbacks(tickRunnable);
+        animation = newAnimation;
+        frameIndex = 0;
+        frameDeadline = SystemClock.uptimeMillis();
+        show();
+    }
+
+    /** Freeze on the first frame and stop scheduling, e.g. while the toy is hidden or in AOD. */
+    public void pause() {
+        if (paused) return;
+        paused = true;
+        handler.removeCallbacks(tickRunnable);
+        if (animation != null && animation.isAnimated()) {
+            frameIndex = 0;
+            sink.submit(animation.getFrame(0));
+        }
+    }
+
+    public void resume() {
+        if (!paused) return;
+        paused = false;
+        if (animation != null && animation.isAnimated()) {
+            frameIndex = 0;
+            frameDeadline = SystemClock.uptimeMillis();
+            show();
+        }
+    }
+
+    public void stop() {
+        handler.removeCallbacks(tickRunnable);
+        animation = null;
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private void advance() {
+        if (animation == null || paused) return;
+
+        long now = SystemClock.uptimeMillis();
+        if (now - frameDeadline > RESYNC_AFTER_MS) {
+            // Way behind (e.g. the thread was blocked); restart the timeline instead of counting a flood of drops
+            frameDeadline = now - animation.getDuration(frameIndex);
+            droppedFrames.increment();
+        }
+        frameDeadline += animation.getDuration(frameIndex);
+        frameIndex = (frameIndex + 1) % animation.getFrameCount();
+
+        // Skip every frame whose slot has already fully passed
+        while (now >= frameDeadline + animation.getDuration(frameIndex)) {
+            frameDeadline += animation.getDuration(frameIndex);
+            frameIndex = (frameIndex + 1) % animation.getFrameCount();
+            droppedFrames.increment();
+        }
+        if (now - frameDeadline > LATE_THRESHOLD_MS) {
+            lateFrames.increment();
+        }
+        show();
+    }
+
+    private void show() {
+        sink.submit(animation.getFrame(frameIndex));
+        framesShown.increment();
+        if (animation.isAnimated() && !paused) {
+            handler.postAtTime(tickRunnable, frameDeadline + animation.getDuration(frameIndex));
+        }
+    }
+}
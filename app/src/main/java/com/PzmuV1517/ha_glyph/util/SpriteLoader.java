@@ -5,24 +5,22 @@ import android.graphics.Bitmap;
 import android.graphics.Color;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 
 public class SpriteLoader {
     private static final String TAG = "SpriteLoader";
     private final Context context;
-    private final Gson gson;
+    private final SpriteJsonParser jsonParser;
+    private int[] argbScratch = new int[25 * 25];
 
     public SpriteLoader(Context context) {
         this.context = context;
-        this.gson = new Gson();
+        this.jsonParser = new SpriteJsonParser();
     }
 
     public Bitmap loadOnSprite() {
@@ -37,92 +35,75 @@ public class SpriteLoader {
         return loadSpriteFromAssets("sprites/HA-err.json");
     }
 
+    // All frames of each sprite, for animated playback; null if the sprite can't be read
+
+    public SpriteData loadOnSpriteData() {
+        return loadSpriteDataFromAssets("sprites/HA-on.json");
+    }
+
+    public SpriteData loadOffSpriteData() {
+        return loadSpriteDataFromAssets("sprites/HA-off.json");
+    }
+
+    public SpriteData loadErrorSpriteData() {
+        return loadSpriteDataFromAssets("sprites/HA-err.json");
+    }
+
     private Bitmap loadSpriteFromAssets(String fileName) {
+        SpriteData sprite = loadSpriteDataFromAssets(fileName);
+        // Only the first frame is displayed
+        return sprite != null ? toBitmap(sprite, 0) : createErrorBitmap();
+    }
+
+    private SpriteData loadSpriteDataFromAssets(String fileName) {
         try {
-            String jsonString = loadJsonFromAssets(fileName);
-            return parseSpriteToBitmap(jsonString);
+            SpriteData packed = loadPackedFromAssets(fileName);
+            if (packed != null) {
+                return packed;
+            }
+            return loadJsonFromAssets(fileName);
         } catch (Exception e) {
             Log.e(TAG, "Failed to load sprite from " + fileName, e);
-            return createErrorBitmap();
+            return null;
         }
     }
 
-    private String loadJsonFromAssets(String fileName) throws IOException {
-        InputStream inputStream = context.getAssets().open(fileName);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        StringBuilder stringBuilder = new StringBuilder();
-        String line;
-
-        while ((line = reader.readLine()) != null) {
-            stringBuilder.append(line);
+    // Sprites compiled at build time by the compileSprites task sit next to their JSON as .bin
+    private SpriteData loadPackedFromAssets(String fileName) {
+        if (!fileName.endsWith(".json")) return null;
+        String packedName = fileName.substring(0, fileName.length() - ".json".length()) + ".bin";
+        try (InputStream inputStream = context.getAssets().open(packedName)) {
+            return PackedSprite.read(inputStream);
+        } catch (IOException e) {
+            return null; // not compiled (or unreadable), fall back to JSON
         }
-
-        reader.close();
-        inputStream.close();
-        return stringBuilder.toString();
     }
 
-    private Bitmap parseSpriteToBitmap(String jsonString) {
-        JsonObject spriteData = gson.fromJson(jsonString, JsonObject.class);
-
-        // Get dimensions
-        JsonObject dimensions = spriteData.getAsJsonObject("dimensions");
-        int width = dimensions.get("width").getAsInt();
-        int height = dimensions.get("height").getAsInt();
-
-        // Create bitmap
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-
-        // Initialize with transparent pixels
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                bitmap.setPixel(x, y, Color.TRANSPARENT);
-            }
+    private SpriteData loadJsonFromAssets(String fileName) throws IOException {
+        try (Reader reader = new BufferedReader(new InputStreamReader(
+                context.getAssets().open(fileName), StandardCharsets.UTF_8))) {
+            return jsonParser.parse(reader);
         }
+    }
 
-        // Get first frame
-        JsonArray frames = spriteData.getAsJsonArray("frames");
-        if (frames.size() > 0) {
-            JsonObject firstFrame = frames.get(0).getAsJsonObject();
-            JsonArray pixels = firstFrame.getAsJsonArray("pixels");
-
-            // Parse pixel data directly from JSON coordinates
-            for (JsonElement pixelElement : pixels) {
-                JsonObject pixel = pixelElement.getAsJsonObject();
-                String index = pixel.get("index").getAsString();
-                float opacity = pixel.get("opacity").getAsFloat();
-
-                if (opacity > 0) {
-                    // Parse the index which should be in format "row-col"
-                    String[] coords = index.split("-");
-                    if (coords.length == 2) {
-                        try {
-                            int row = Integer.parseInt(coords[0]);
-                            int col = Integer.parseInt(coords[1]);
-
-                            // Ensure coordinates are within bounds
-                            if (row >= 0 && row < height && col >= 0 && col < width) {
-                                // Convert opacity to alpha and create white pixel
-                                int alpha = Math.round(opacity * 255);
-                                int color = Color.argb(alpha, 255, 255, 255);
-                                bitmap.setPixel(col, row, color);
-                            }
-                        } catch (NumberFormatException e) {
-                            Log.w(TAG, "Invalid pixel index format: " + index);
-                        }
-                    }
-                }
-            }
+    public Bitmap toBitmap(SpriteData sprite, int frame) {
+        int width = sprite.getWidth();
+        int height = sprite.getHeight();
+        int size = width * height;
+        if (argbScratch.length < size) {
+            argbScratch = new int[size];
         }
+        sprite.copyFrameArgb(frame, argbScratch);
 
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(argbScratch, 0, width, 0, 0, width, height);
         return bitmap;
     }
 
     private Bitmap createErrorBitmap() {
         // Try to load the HA-err.json sprite first, but avoid recursion
         try {
-            String jsonString = loadJsonFromAssets("sprites/HA-err.json");
-            return parseSpriteToBitmap(jsonString);
+            return toBitmap(loadJsonFromAssets("sprites/HA-err.json"), 0);
         } catch (Exception e) {
             Log.w(TAG, "Failed to load HA-err.json sprite, creating fallback pattern", e);
             // Create a simple red X pattern for error cases as fallback
@@ -0,0 +1,126 @@
+package com.PzmuV1517.ha_glyph;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.EntitySearchIndex;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the notifications DeviceAdapter produces: filtering should only insert/remove the
+ * rows that entered or left the result, and a selection change should touch two rows.
+ */
+public class DeviceAdapterDiffTest {
+    private static final List<HomeAssistantEntity> DEVICE_LIST = Arrays.asList(
+            entity("light.kitchen", "on", "Kitchen"),
+            entity("light.hallway", "off", "Hallway"),
+            entity("switch.kettle", "off", "Kettle"),
+            entity("fan.bedroom", "on", "Bedroom Fan"),
+            entity("light.bedroom", "on", "Bedroom"));
+    private static final EntityStore DEVICES = EntityStore.of(DEVICE_LIST);
+
+    @Test
+    public void filterOnlyRemovesRowsThatNoLongerMatch() {
+        RecordingCallback callback = diff(DEVICES, null, DEVICES, new EntitySearchIndex(DEVICES).search("bedroom"));
+
+        // Kitchen, Hallway and Kettle go as one range
+        assertEquals(Arrays.asList("removed 0+3"), callback.events);
+    }
+
+    @Test
+    public void clearingFilterOnlyInsertsRowsThatWereHidden() {
+        int[] filtered = new EntitySearchIndex(DEVICES).search("light");
+        RecordingCallback callback = diff(DEVICES, filtered, DEVICES, null);
+
+        // Kettle and Bedroom Fan come back between Hallway and Bedroom
+        assertEquals(Arrays.asList("inserted 2+2"), callback.events);
+    }
+
+    @Test
+    public void unchangedListProducesNoEvents() {
+        RecordingCallback callback = diff(DEVICES, null, DEVICES, new EntitySearchIndex(DEVICES).search(null));
+
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void stateChangeIsAContentChangeOfOneRow() {
+        List<HomeAssistantEntity> updated = new ArrayList<>(DEVICE_LIST);
+        updated.set(2, entity("switch.kettle", "on", "Kettle"));
+
+        RecordingCallback callback = diff(DEVICES, null, EntityStore.of(updated), null);
+
+        assertEquals(Arrays.asList("changed 2+1"), callback.events);
+    }
+
+    @Test
+    public void selectionChangeTouchesOnlyOldAndNewRows() {
+        RecordingCallback callback = new RecordingCallback();
+        DeviceAdapter.dispatchSelectionChange(DEVICES, null, "light.hallway", "fan.bedroom", callback);
+
+        assertEquals(Arrays.asList("changed 1+1 selection", "changed 3+1 selection"), callback.events);
+    }
+
+    @Test
+    public void firstSelectionTouchesOneRowAndReselectionNone() {
+        RecordingCallback callback = new RecordingCallback();
+        DeviceAdapter.dispatchSelectionChange(DEVICES, null, null, "switch.kettle", callback);
+        assertEquals(Arrays.asList("changed 2+1 selection"), callback.events);
+
+        callback.events.clear();
+        DeviceAdapter.dispatchSelectionChange(DEVICES, null, "switch.kettle", "switch.kettle", callback);
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void selectionInSearchResultsUsesShownPositions() {
+        RecordingCallback callback = new RecordingCallback();
+        int[] results = {DEVICES.indexOf("light.bedroom"), DEVICES.indexOf("fan.bedroom")};
+        DeviceAdapter.dispatchSelectionChange(DEVICES, results, null, "fan.bedroom", callback);
+
+        assertEquals(Arrays.asList("changed 1+1 selection"), callback.events);
+    }
+
+    private static RecordingCallback diff(EntityStore oldStore, int[] oldRows, EntityStore newStore, int[] newRows) {
+        RecordingCallback callback = new RecordingCallback();
+        DeviceAdapter.calculate(oldStore, oldRows, newStore, newRows).dispatchUpdatesTo(callback);
+        return callback;
+    }
+
+    private static HomeAssistantEntity entity(String id, String state, String name) {
+        return new HomeAssistantEntity(id, state, name, null);
+    }
+
+    // dispatchUpdatesTo batches adjacent single-row updates into ranges before they get here
+    private static class RecordingCallback implements ListUpdateCallback {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onInserted(int position, int count) {
+            events.add("inserted " + position + "+" + count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            events.add("removed " + position + "+" + count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            events.add("moved " + fromPosition + "->" + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            events.add("changed " + position + "+" + count + (payload == DeviceAdapter.PAYLOAD_SELECTION ? " selection" : ""));
+        }
+    }
+}
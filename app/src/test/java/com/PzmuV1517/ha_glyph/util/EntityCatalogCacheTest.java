@@ -0,0 +1,102 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntityCatalogCacheTest {
+    private static final String SERVER = "http://homeassistant.local:8123/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsEntities() throws IOException {
+        EntityCatalogCache cache = new EntityCatalogCache(folder.newFile());
+        List<HomeAssistantEntity> entities = new ArrayList<>();
+        entities.add(new HomeAssistantEntity("light.kitchen", "on", "Kitchen Ceiling", null));
+        entities.add(new HomeAssistantEntity("switch.fan", "off", null, "outlet"));
+        entities.add(new HomeAssistantEntity("input_boolean.guest_mode", "unavailable", "G\u00e4ste", null));
+
+        cache.save(SERVER, EntityStore.of(entities));
+        EntityStore loaded = cache.load(SERVER);
+
+        assertEquals(3, loaded.size());
+        for (int i = 0; i < entities.size(); i++) {
+            assertEquals(entities.get(i).getEntityId(), loaded.getEntityId(i));
+            assertEquals(entities.get(i).getFriendlyName(), loaded.getFriendlyName(i));
+            assertEquals(entities.get(i).getState(), loaded.getState(i));
+            assertEquals(entities.get(i).getDomain(), loaded.getDomain(i));
+        }
+    }
+
+    @Test
+    public void ignoresOtherServers() throws IOException {
+        EntityCatalogCache cache = new EntityCatalogCache(folder.newFile());
+        cache.save(SERVER, EntityStore.of(List.of(new HomeAssistantEntity("light.a", "on", "A", null))));
+
+        assertNull(cache.load("http://other:8123/"));
+    }
+
+    @Test
+    public void ignoresOtherVersionsAndGarbage() throws IOException {
+        File file = folder.newFile();
+        EntityCatalogCache cache = new EntityCatalogCache(file);
+        cache.save(SERVER, EntityStore.of(List.of(new HomeAssistantEntity("light.a", "on", "A", null))));
+
+        byte[] data = Files.readAllBytes(file.toPath());
+        data[4] = (byte) (EntityCatalogCache.VERSION + 1);
+        Files.write(file.toPath(), data);
+        assertNull(cache.load(SERVER));
+
+        Files.write(file.toPath(), new byte[]{'H', 'A', 'E', 'C', 1, 0});
+        assertNull(cache.load(SERVER));
+
+        cache.clear();
+        assertNull(cache.load(SERVER));
+    }
+
+    @Test
+    public void capsStoredEntities() throws IOException {
+        EntityCatalogCache cache = new EntityCatalogCache(folder.newFile());
+        cache.save(SERVER, generate(EntityCatalogCache.MAX_ENTITIES + 100));
+
+        assertEquals(EntityCatalogCache.MAX_ENTITIES, cache.load(SERVER).size());
+    }
+
+    @Test
+    public void roundTripsALargeCatalog() throws IOException {
+        EntityCatalogCache cache = new EntityCatalogCache(folder.newFile());
+        EntityStore saved = generate(1000);
+        cache.save(SERVER, saved);
+
+        EntityStore loaded = cache.load(SERVER);
+
+        assertEquals(saved.size(), loaded.size());
+        for (int i = 0; i < saved.size(); i++) {
+            assertEquals(saved.getEntityId(i), loaded.getEntityId(i));
+            assertEquals(saved.getState(i), loaded.getState(i));
+        }
+    }
+
+    private static EntityStore generate(int count) {
+        String[] domains = {"light", "switch", "fan", "input_boolean", "automation"};
+        List<HomeAssistantEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String domain = domains[i % domains.length];
+            entities.add(new HomeAssistantEntity(domain + ".device_" + i, i % 2 == 0 ? "on" : "off", "Device " + i, null));
+        }
+        return EntityStore.of(entities);
+    }
+}
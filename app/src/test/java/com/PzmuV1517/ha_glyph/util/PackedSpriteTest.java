@@ -0,0 +1,62 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the sprites packed by the compileSprites task decode to exactly the
+ * pixels the JSON loader produces.
+ */
+public class PackedSpriteTest {
+    private static final File JSON_DIR = new File("src/main/assets/sprites");
+    private static final String[] SPRITES = {"HA-on", "HA-off", "HA-err"};
+
+    @Test
+    public void packedSpritesMatchJson() throws IOException {
+        String compiledDir = System.getProperty("haglyph.compiledSpritesDir");
+        assertNotNull("compileSprites output not passed to the test JVM", compiledDir);
+
+        SpriteJsonParser jsonParser = new SpriteJsonParser();
+        for (String name : SPRITES) {
+            String json = new String(Files.readAllBytes(new File(JSON_DIR, name + ".json").toPath()), StandardCharsets.UTF_8);
+            SpriteData expected = jsonParser.parse(json);
+
+            SpriteData packed;
+            try (InputStream in = new FileInputStream(new File(compiledDir, name + ".bin"))) {
+                packed = PackedSprite.read(in);
+            }
+
+            assertSameSprite(name, expected, packed);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedData() throws IOException {
+        PackedSprite.decode(new byte[]{'H', 'A', 'G', 'S', 1, 25, 25, 0, 1, 7});
+    }
+
+    private static void assertSameSprite(String name, SpriteData expected, SpriteData actual) {
+        assertEquals(name + " width", expected.getWidth(), actual.getWidth());
+        assertEquals(name + " height", expected.getHeight(), actual.getHeight());
+        assertArrayEquals(name + " shape", expected.getShape(), actual.getShape());
+        assertEquals(name + " frames", expected.getFrameCount(), actual.getFrameCount());
+
+        for (int frame = 0; frame < expected.getFrameCount(); frame++) {
+            assertEquals(name + " duration", expected.getFrameDuration(frame), actual.getFrameDuration(frame));
+            for (int row = 0; row < expected.getHeight(); row++) {
+                for (int col = 0; col < expected.getWidth(); col++) {
+                    assertEquals(name + " pixel " + row + "-" + col,
+                            expected.getBrightness(frame, row, col), actual.getBrightness(frame, row, col));
+                }
+            }
+        }
+    }
+}
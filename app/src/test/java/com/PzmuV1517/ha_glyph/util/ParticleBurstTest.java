@@ -0,0 +1,72 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class ParticleBurstTest {
+    private static final float RADIUS = 36f;
+
+    @Test
+    public void particlesFlyOutToTheRadiusAndFade() {
+        ParticleBurst burst = new ParticleBurst(10, RADIUS, 450, 15, 1);
+        burst.start();
+        for (int i = 0; i < burst.getCount(); i++) {
+            assertEquals(0f, burst.getX(i), 0f);
+            assertEquals(0f, burst.getAlpha(i), 0f);
+        }
+
+        assertTrue(burst.update(300));
+        assertTrue(burst.getAlpha(0) > 0f);
+
+        assertFalse(burst.update(burst.getDurationMs()));
+        for (int i = 0; i < burst.getCount(); i++) {
+            float distance = (float) Math.hypot(burst.getX(i), burst.getY(i));
+            assertEquals(RADIUS, distance, 0.01f);
+            assertEquals(0f, burst.getAlpha(i), 0f);
+            assertEquals(0.2f, burst.getScale(i), 0.001f);
+        }
+    }
+
+    @Test
+    public void laterParticlesStartLater() {
+        ParticleBurst burst = new ParticleBurst(10, RADIUS, 450, 15, 1);
+        burst.start();
+        burst.update(10);
+        assertTrue(burst.getAlpha(0) > 0f);
+        assertEquals(0f, burst.getAlpha(1), 0f);
+    }
+
+    @Test
+    public void repeatedBurstsAllocateNothing() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue("JVM can't count allocated bytes", bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue("Allocation counting is off", allocations.isThreadAllocatedMemoryEnabled());
+
+        ParticleBurst burst = new ParticleBurst(10, RADIUS, 450, 15, 1);
+        runBursts(burst, 2000); // warm-up, until the loop is compiled
+
+        // The measurement itself costs a few hundred bytes; a real per-burst allocation
+        // would show up as at least one object per burst
+        int bursts = 10_000;
+        long thread = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(thread);
+        runBursts(burst, bursts);
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+
+        assertEquals(allocated + " bytes over " + bursts + " bursts", 0, allocated / bursts);
+    }
+
+    private static void runBursts(ParticleBurst burst, int bursts) {
+        for (int n = 0; n < bursts; n++) {
+            burst.start();
+            for (long t = 0; burst.update(t); t += 16) {
+                // one frame per vsync
+            }
+        }
+    }
+}
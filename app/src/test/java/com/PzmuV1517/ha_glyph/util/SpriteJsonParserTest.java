@@ -0,0 +1,105 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SpriteJsonParserTest {
+    private final SpriteJsonParser parser = new SpriteJsonParser();
+
+    @Test
+    public void matchesGsonTreeLoaderOnBundledSprites() throws IOException {
+        Gson gson = new Gson();
+        for (String name : SpriteFixtures.BUNDLED) {
+            String json = SpriteFixtures.bundled(name);
+            assertSameSprite(SpriteFixtures.parseWithGsonTree(gson, json), parser.parse(json));
+        }
+    }
+
+    @Test
+    public void decodesEveryFrameOfAnimatedSprite() throws IOException {
+        String json = SpriteFixtures.animated(100);
+        SpriteData sprite = parser.parse(json);
+        assertEquals(100, sprite.getFrameCount());
+        assertSameSprite(SpriteFixtures.parseWithGsonTree(new Gson(), json), sprite);
+    }
+
+    @Test
+    public void parsesDontShareFrames() throws IOException {
+        String animated = SpriteFixtures.animated(10);
+        SpriteData big = parser.parse(animated);
+        SpriteData small = parser.parse(SpriteFixtures.bundled("HA-on"));
+        assertEquals(1, small.getFrameCount());
+        assertSameSprite(SpriteFixtures.parseWithGsonTree(new Gson(), SpriteFixtures.bundled("HA-on")), small);
+        assertSameSprite(SpriteFixtures.parseWithGsonTree(new Gson(), animated), big);
+    }
+
+    @Test
+    public void acceptsFramesAndShapeBeforeDimensions() throws IOException {
+        String frames = "\"frames\":["
+                + "{\"duration\":50,\"pixels\":[{\"index\":\"0-1\",\"opacity\":1},{\"index\":\"2-2\",\"opacity\":128}]},"
+                + "{\"duration\":70,\"pixels\":[{\"index\":\"1-0\",\"opacity\":255},{\"index\":\"9-9\",\"opacity\":1}]}]";
+        String shape = "\"shape\":[1,3,3]";
+        String dimensions = "\"dimensions\":{\"width\":3,\"height\":3}";
+
+        SpriteData expected = parser.parse("{" + dimensions + "," + shape + "," + frames + "}");
+        SpriteData actual = parser.parse("{" + frames + "," + shape + "," + dimensions + "}");
+
+        assertSameSprite(expected, actual);
+        assertEquals(2, actual.getFrameCount());
+        assertEquals(70, actual.getFrameDuration(1));
+        assertEquals(255, actual.getBrightness(0, 0, 1));
+        assertEquals(128, actual.getBrightness(0, 2, 2));
+        assertEquals(255, actual.getBrightness(1, 1, 0));
+        assertArrayEquals(new int[]{1, 3, 3}, actual.getShape());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsShapeBeforeDimensionsThatDoesNotFit() throws IOException {
+        parser.parse("{\"shape\":[3,4],\"dimensions\":{\"width\":3,\"height\":2},\"frames\":[]}");
+    }
+
+    @Test
+    public void parsesIndex() {
+        assertEquals((12 << 16) | 7, SpriteJsonParser.parseIndex("12-7"));
+        assertEquals(-1, SpriteJsonParser.parseIndex("12"));
+        assertEquals(-1, SpriteJsonParser.parseIndex("-7"));
+        assertEquals(-1, SpriteJsonParser.parseIndex("1-2-3"));
+        assertEquals(-1, SpriteJsonParser.parseIndex("a-b"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsBadDimensions() throws IOException {
+        parser.parse("{\"dimensions\":{\"width\":0,\"height\":25},\"frames\":[]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsShapeWithWrongRowCount() throws IOException {
+        parser.parse("{\"dimensions\":{\"width\":3,\"height\":3},\"shape\":[1,3],\"frames\":[]}");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsShapeWiderThanSprite() throws IOException {
+        parser.parse("{\"dimensions\":{\"width\":3,\"height\":2},\"shape\":[3,4],\"frames\":[]}");
+    }
+
+    private static void assertSameSprite(SpriteData expected, SpriteData actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertArrayEquals(expected.getShape(), actual.getShape());
+        assertEquals(expected.getFrameCount(), actual.getFrameCount());
+        int size = expected.getWidth() * expected.getHeight();
+        int[] expectedFrame = new int[size];
+        int[] actualFrame = new int[size];
+        for (int frame = 0; frame < expected.getFrameCount(); frame++) {
+            assertEquals(expected.getFrameDuration(frame), actual.getFrameDuration(frame));
+            expected.copyFrame(frame, expectedFrame);
+            actual.copyFrame(frame, actualFrame);
+            assertArrayEquals("frame " + frame, expectedFrame, actualFrame);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// JMH benchmarks for :core, run on a plain JVM with ./gradlew :benchmark:jmh
+// Every benchmark reports throughput; the gc profiler adds allocation rate (gc.alloc.rate.norm = bytes/op)
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":core"))
+    jmh(testFixtures(project(":core")))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    jvmArgsAppend.add("-Dhaglyph.spritesDir=" + rootProject.file("app/src/main/assets/sprites").absolutePath)
+}
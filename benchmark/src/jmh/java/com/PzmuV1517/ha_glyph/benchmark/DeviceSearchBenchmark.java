@@ -0,0 +1,69 @@
+package com.PzmuV1517.ha_glyph.benchmark;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.EntityFixtures;
+import com.PzmuV1517.ha_glyph.util.EntitySearchIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Device list search: building the store and index when the list changes, querying it,
+ * and the plain substring scan DeviceAdapter used before the index, for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class DeviceSearchBenchmark {
+    @Param({"1000", "10000", "50000"})
+    public int devices;
+
+    private List<HomeAssistantEntity> list;
+    private EntityStore store;
+    private EntitySearchIndex index;
+
+    @Setup
+    public void setUp() {
+        list = EntityFixtures.generate(devices);
+        store = EntityStore.of(list);
+        index = new EntitySearchIndex(store);
+    }
+
+    @Benchmark
+    public EntityStore buildStore() {
+        return EntityStore.of(list);
+    }
+
+    @Benchmark
+    public EntitySearchIndex buildIndex() {
+        return new EntitySearchIndex(store);
+    }
+
+    @Benchmark
+    public int[] indexedSearch(Query query) {
+        return index.search(query.text);
+    }
+
+    @Benchmark
+    public List<HomeAssistantEntity> linearFilter(Query query) {
+        return EntityFixtures.linearSearch(list, query.text);
+    }
+
+    // Separate state so buildIndex isn't repeated per query
+    @State(Scope.Benchmark)
+    public static class Query {
+        // Short (scans keys), common word, and a rare multi-word query
+        @Param({"la", "lamp", "garage heater 3"})
+        public String text;
+    }
+}
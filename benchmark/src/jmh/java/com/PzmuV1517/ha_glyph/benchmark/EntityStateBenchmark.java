@@ -0,0 +1,45 @@
+package com.PzmuV1517.ha_glyph.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.PzmuV1517.ha_glyph.api.HomeAssistantEntityTypeAdapter;
+import com.PzmuV1517.ha_glyph.api.StatesFixtures;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/** Single /api/states/&lt;entity_id&gt; decoding, as done on every toy service poll. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class EntityStateBenchmark {
+    // A light is what the toy usually shows; media_player carries the largest attribute tree
+    @Param({"light", "media_player"})
+    public String domain;
+
+    private String payload;
+    private Gson gson;
+
+    @Setup
+    public void setUp() {
+        payload = StatesFixtures.entity(domain);
+        gson = new GsonBuilder()
+                .registerTypeAdapter(HomeAssistantEntity.class, new HomeAssistantEntityTypeAdapter())
+                .create();
+    }
+
+    @Benchmark
+    public HomeAssistantEntity getEntityState() {
+        return gson.fromJson(new StringReader(payload), HomeAssistantEntity.class);
+    }
+}
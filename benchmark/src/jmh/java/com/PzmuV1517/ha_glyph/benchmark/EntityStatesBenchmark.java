@@ -0,0 +1,112 @@
+package com.PzmuV1517.ha_glyph.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.PzmuV1517.ha_glyph.api.EntityStatesDecoder;
+import com.PzmuV1517.ha_glyph.api.HomeAssistantEntityTypeAdapter;
+import com.PzmuV1517.ha_glyph.api.StatesFixtures;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk /api/states decoding: the whole list through Gson as getStates does (and through
+ * reflective binding, as before the entity adapter), and the streaming decoder streamStates
+ * uses, with and without the device list's domain filter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class EntityStatesBenchmark {
+    private static final Type LIST_TYPE = new TypeToken<List<HomeAssistantEntity>>(){}.getType();
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"100", "1000", "4000"})
+    public int entities;
+
+    private String payload;
+    private String firstEntity;
+    private String[] entityIds;
+    private Gson gson;
+    private Gson reflective;
+    private EntityStatesDecoder allDomains;
+    private EntityStatesDecoder controllable;
+
+    @Setup
+    public void setUp() {
+        payload = StatesFixtures.states(entities);
+        firstEntity = payload.substring(1, payload.indexOf(",{\"entity_id\""));
+        gson = adapterGson();
+        reflective = new Gson();
+        allDomains = new EntityStatesDecoder(null, BATCH_SIZE);
+        controllable = new EntityStatesDecoder(HomeAssistantEntity.CONTROLLABLE_DOMAINS, BATCH_SIZE);
+
+        List<HomeAssistantEntity> decoded = gson.fromJson(payload, LIST_TYPE);
+        entityIds = new String[decoded.size()];
+        for (int i = 0; i < entityIds.length; i++) {
+            entityIds[i] = decoded.get(i).getEntityId();
+        }
+    }
+
+    @Benchmark
+    public List<HomeAssistantEntity> getStates() {
+        return gson.fromJson(new StringReader(payload), LIST_TYPE);
+    }
+
+    @Benchmark
+    public List<HomeAssistantEntity> getStatesReflective() {
+        return reflective.fromJson(new StringReader(payload), LIST_TYPE);
+    }
+
+    /** A fresh Gson's first entity, which includes building the binding for the class. */
+    @Benchmark
+    public HomeAssistantEntity firstParseAdapter() {
+        return adapterGson().fromJson(firstEntity, HomeAssistantEntity.class);
+    }
+
+    @Benchmark
+    public HomeAssistantEntity firstParseReflective() {
+        return new Gson().fromJson(firstEntity, HomeAssistantEntity.class);
+    }
+
+    @Benchmark
+    public int streamAll(Blackhole blackhole) throws IOException {
+        return allDomains.decode(new StringReader(payload), blackhole::consume);
+    }
+
+    @Benchmark
+    public int streamControllable(Blackhole blackhole) throws IOException {
+        return controllable.decode(new StringReader(payload), blackhole::consume);
+    }
+
+    /** The domain check alone, over ids already in memory. */
+    @Benchmark
+    public int domainFilter() {
+        int matched = 0;
+        for (String entityId : entityIds) {
+            if (controllable.matchesDomain(entityId)) matched++;
+        }
+        return matched;
+    }
+
+    private static Gson adapterGson() {
+        return new GsonBuilder()
+                .registerTypeAdapter(HomeAssistantEntity.class, new HomeAssistantEntityTypeAdapter())
+                .create();
+    }
+}
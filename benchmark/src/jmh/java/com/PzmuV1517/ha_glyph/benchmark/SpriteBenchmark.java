@@ -0,0 +1,68 @@
+package com.PzmuV1517.ha_glyph.benchmark;
+
+import com.google.gson.Gson;
+import com.PzmuV1517.ha_glyph.util.SpriteData;
+import com.PzmuV1517.ha_glyph.util.SpriteFixtures;
+import com.PzmuV1517.ha_glyph.util.SpriteJsonParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bundled sprites, and a 100-frame animation, through SpriteLoader's JSON path (one
+ * reused parser) against the Gson tree loader it replaced, and the per-frame ARGB
+ * rasterization done before handing a frame to a Bitmap.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class SpriteBenchmark {
+    @Param({"HA-on", "HA-off", "HA-err", "animated-100"})
+    public String sprite;
+
+    private String json;
+    private SpriteJsonParser parser;
+    private Gson gson;
+    private SpriteData decoded;
+    private int[] argb;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = sprite.startsWith("animated-")
+                ? SpriteFixtures.animated(Integer.parseInt(sprite.substring("animated-".length())))
+                : SpriteFixtures.bundled(sprite);
+        parser = new SpriteJsonParser();
+        gson = new Gson();
+        decoded = parser.parse(json);
+        argb = new int[decoded.getWidth() * decoded.getHeight()];
+    }
+
+    @Benchmark
+    public SpriteData parseJson() throws IOException {
+        return parser.parse(new BufferedReader(new StringReader(json)));
+    }
+
+    @Benchmark
+    public SpriteData parseGsonTree() {
+        return SpriteFixtures.parseWithGsonTree(gson, json);
+    }
+
+    @Benchmark
+    public int[] rasterizeFrames() {
+        for (int frame = 0; frame < decoded.getFrameCount(); frame++) {
+            decoded.copyFrameArgb(frame, argb);
+        }
+        return argb;
+    }
+}
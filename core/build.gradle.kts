@@ -0,0 +1,18 @@
+// Android-free logic shared by the app and the JVM benchmarks: API client, entity model,
+// search and sprite decoding
+plugins {
+    `java-library`
+    `java-test-fixtures`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    api(libs.okhttp)
+    api(libs.gson)
+    testImplementation(libs.junit)
+    testImplementation(libs.mockwebserver)
+}
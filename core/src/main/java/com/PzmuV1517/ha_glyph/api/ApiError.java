@@ -0,0 +1,111 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.UnknownHostException;
+
+/**
+ * Why a Home Assistant request failed, so callers can tell a revoked token from a server
+ * that is down. {@link #getMessage()} is the text the UI showed before errors had a kind.
+ */
+public final class ApiError {
+    public enum Kind {
+        /** No URL or token configured. */
+        NOT_CONFIGURED,
+        /** 401/403: the token was rejected; retrying won't help. */
+        AUTH,
+        /** The host name didn't resolve. */
+        DNS,
+        /** Connecting or reading timed out. */
+        TIMEOUT,
+        /** Connection refused, unreachable or dropped, or any other I/O failure. */
+        CONNECT,
+        /** 5xx from the server. */
+        SERVER,
+        /** Any other HTTP status. */
+        HTTP,
+        /** The server answered with something we couldn't read. */
+        PARSE,
+        /** Not sent: the host failed recently and its circuit breaker is open. */
+        CIRCUIT_OPEN
+    }
+
+    private final Kind kind;
+    private final int httpCode;
+    private final String message;
+
+    public ApiError(Kind kind, int httpCode, String message) {
+        this.kind = kind;
+        this.httpCode = httpCode;
+        this.message = message;
+    }
+
+    public static ApiError notConfigured() {
+        return new ApiError(Kind.NOT_CONFIGURED, 0, "Not configured");
+    }
+
+    public static ApiError circuitOpen(long retryInMs) {
+        return new ApiError(Kind.CIRCUIT_OPEN, 0, "Server unreachable, retrying in " + (retryInMs + 999) / 1000 + " s");
+    }
+
+    /** Classifies a failed call; {@code prefix} is what the message starts with, e.g. "Failed to get states". */
+    public static ApiError fromException(String prefix, IOException e) {
+        Kind kind;
+        if (e instanceof UnknownHostException) {
+            kind = Kind.DNS;
+        } else if (e instanceof InterruptedIOException) {
+            kind = Kind.TIMEOUT; // SocketTimeoutException and OkHttp's call timeout
+        } else {
+            kind = Kind.CONNECT; // refused, unreachable, reset, TLS
+        }
+        return new ApiError(kind, 0, prefix + ": " + e.getMessage());
+    }
+
+    public static ApiError fromStatus(int code, String reason) {
+        Kind kind;
+        if (code == 401 || code == 403) {
+            kind = Kind.AUTH;
+        } else if (code >= 500) {
+            kind = Kind.SERVER;
+        } else {
+            kind = Kind.HTTP;
+        }
+        return new ApiError(kind, code, "HTTP " + code + ": " + reason);
+    }
+
+    public static ApiError parse(String prefix, Exception e) {
+        return new ApiError(Kind.PARSE, 0, prefix + ": " + e.getMessage());
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** The HTTP status, or 0 if there was no response. */
+    public int getHttpCode() {
+        return httpCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /** Retrying with the same configuration can't succeed. */
+    public boolean isTerminal() {
+        return kind == Kind.AUTH || kind == Kind.NOT_CONFIGURED;
+    }
+
+    /**
+     * The host itself looks unhealthy. HomeAssistantApiClient counts these against the
+     * host's circuit breaker and has a hedged request wait for its twin instead of
+     * reporting them.
+     */
+    public boolean isHostFailure() {
+        return kind == Kind.DNS || kind == Kind.TIMEOUT || kind == Kind.CONNECT || kind == Kind.SERVER;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + message;
+    }
+}
@@ -0,0 +1,103 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.util.Clock;
+
+import java.util.Random;
+
+/**
+ * Stops sending requests to a host that keeps failing. After {@link #FAILURE_THRESHOLD}
+ * failures in a row the breaker opens and requests fail fast without touching the network.
+ * Once the open period has passed, one request goes through as a probe (half-open): success
+ * closes the breaker, failure opens it again for twice as long, up to {@link #MAX_OPEN_MS}.
+ * Open periods are jittered (half fixed, half random) so clients that failed together
+ * don't all retry at the same moment.
+ *
+ * Every request let through must be reported with {@link #onSuccess()} or {@link #onFailure()}.
+ * Thread-safe.
+ */
+public final class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public static final int FAILURE_THRESHOLD = 3;
+    public static final long BASE_OPEN_MS = 2000;
+    public static final long MAX_OPEN_MS = 5 * 60_000;
+    private static final int MAX_BACKOFF_STEPS = 20;
+
+    private final Clock clock;
+    private final Random random;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private int opens = 0; // since the breaker last closed
+    private long openUntil;
+    private boolean probeInFlight = false;
+
+    public CircuitBreaker(Clock clock) {
+        this(clock, new Random());
+    }
+
+    public CircuitBreaker(Clock clock, Random random) {
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /** True if a request may be sent now; false means fail it without sending. */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.uptimeMillis() < openUntil) break;
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (probeInFlight) break;
+                probeInFlight = true;
+                return true;
+        }
+        return false;
+    }
+
+    /** The host answered (any HTTP response below 500 counts). */
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        opens = 0;
+        probeInFlight = false;
+    }
+
+    /** The host failed; returns true if this opened the breaker. */
+    public synchronized boolean onFailure() {
+        probeInFlight = false;
+        if (state == State.OPEN) return false; // a request sent before the breaker opened
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+            open();
+            return true;
+        }
+        return false;
+    }
+
+    private void open() {
+        opens++;
+        long period = Math.min(MAX_OPEN_MS, BASE_OPEN_MS << Math.min(MAX_BACKOFF_STEPS, opens - 1));
+        long jittered = period / 2 + (long) (random.nextDouble() * (period / 2));
+        openUntil = clock.uptimeMillis() + jittered;
+        state = State.OPEN;
+    }
+
+    /** Forgets past failures, e.g. after switching networks; they say nothing about the new path. */
+    public synchronized void reset() {
+        onSuccess();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /** How long until a probe is let through; 0 unless open. */
+    public synchronized long retryInMs() {
+        return state == State.OPEN ? Math.max(0, openUntil - clock.uptimeMillis()) : 0;
+    }
+}
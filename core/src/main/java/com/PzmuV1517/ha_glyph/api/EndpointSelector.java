@@ -0,0 +1,273 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.util.Clock;
+import com.PzmuV1517.ha_glyph.util.NetworkGate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Picks which of a server's base URLs to talk to, e.g. a LAN address at home and a remote
+ * URL elsewhere. A probe sends GET api/ to every candidate at once with short timeouts and
+ * pins the first one to answer below 500, so the fastest healthy path wins. Until a probe
+ * has answered, the first URL in the configured order is used, skipping LAN-only ones while
+ * off the local network.
+ *
+ * Probes run on request ({@link #probe}), when the local network comes or goes, after the
+ * pinned endpoint fails, and every {@link #REPROBE_INTERVAL_MS} while requests are made.
+ * Thread-safe; probe results arrive on OkHttp's threads.
+ */
+public final class EndpointSelector {
+    public static final long PROBE_TIMEOUT_MS = 3000;
+    public static final long REPROBE_INTERVAL_MS = 5 * 60_000;
+    public static final long MIN_PROBE_GAP_MS = 10_000;
+    /** Latency recorded for an endpoint that failed its last probe. */
+    public static final long FAILED = -1;
+
+    public interface Listener {
+        /** Requests now go to {@code baseUrl}; connections to the old one won't be used. */
+        void onEndpointChanged(String baseUrl);
+    }
+
+    private final OkHttpClient probeClient;
+    private final Clock clock;
+    private final Listener listener;
+
+    private List<String> endpoints = Collections.emptyList();
+    private String accessToken;
+    private volatile String current;
+    private boolean localNetwork = true;
+    private final Map<String, Long> latencies = new LinkedHashMap<>();
+
+    // One probe round at a time; results from an older round are dropped
+    private int round;
+    private boolean probing = false;
+    private boolean settled = true;
+    private int pending;
+    private long lastProbe;
+    private boolean probed = false;
+    private final List<Runnable> waiting = new ArrayList<>();
+
+    public EndpointSelector(OkHttpClient client, Clock clock, Listener listener) {
+        this.probeClient = client.newBuilder()
+                .connectTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .callTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .build();
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    /**
+     * Splits what the user typed (URLs separated by commas or spaces) into base URLs,
+     * adding http:// where no scheme was given. Empty for null or blank text.
+     */
+    public static List<String> parseUrls(String text) {
+        List<String> urls = new ArrayList<>();
+        if (text == null) return urls;
+        for (String part : text.split("[,\\s]+")) {
+            if (part.isEmpty()) continue;
+            String url = part.startsWith("http://") || part.startsWith("https://") ? part : "http://" + part;
+            if (!urls.contains(url)) urls.add(url);
+        }
+        return urls;
+    }
+
+    /** Sets the candidates, best first. Forgets earlier probes; the first usable URL is pinned until the next one. */
+    public void configure(List<String> baseUrls, String accessToken) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            List<String> normalized = new ArrayList<>();
+            for (String url : baseUrls) {
+                String base = url.endsWith("/") ? url : url + "/";
+                if (!normalized.contains(base)) normalized.add(base);
+            }
+            endpoints = Collections.unmodifiableList(normalized);
+            this.accessToken = accessToken;
+            latencies.clear();
+            round++;
+            probing = false;
+            probed = false;
+            current = preferred();
+            toRun = settle();
+        }
+        runAll(toRun);
+    }
+
+    /** The base URL requests go to now, ending in '/', or null if none is configured. */
+    public String current() {
+        return current;
+    }
+
+    public synchronized List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    /** Last probe latency per endpoint in ms, {@link #FAILED}, or absent if not probed; in configured order. */
+    public synchronized Map<String, Long> getLatencies() {
+        Map<String, Long> copy = new LinkedHashMap<>();
+        for (String url : endpoints) {
+            Long latency = latencies.get(url);
+            if (latency != null) copy.put(url, latency);
+        }
+        return copy;
+    }
+
+    /** Whether a probe round still has answers outstanding. */
+    synchronized boolean isProbing() {
+        return probing;
+    }
+
+    /**
+     * Whether the device is on Wi-Fi or Ethernet, where LAN-only URLs can work. A change
+     * moves off a LAN-only endpoint right away if needed and probes again.
+     */
+    public void setLocalNetwork(boolean localNetwork) {
+        String changed = null;
+        synchronized (this) {
+            if (this.localNetwork == localNetwork) return;
+            this.localNetwork = localNetwork;
+            if (current != null && !isCandidate(current)) {
+                current = preferred();
+                changed = current;
+            }
+        }
+        if (changed != null) listener.onEndpointChanged(changed);
+        probe(null);
+    }
+
+    /**
+     * Probes every candidate unless a round is already running. {@code onSettled}, if given,
+     * runs once an endpoint is pinned or every candidate has failed; right away when there
+     * is nothing to choose between.
+     */
+    public void probe(Runnable onSettled) {
+        List<String> candidates = new ArrayList<>();
+        List<Runnable> nothingToProbe = null;
+        String token = null;
+        int probeRound = 0;
+        synchronized (this) {
+            if (onSettled != null) waiting.add(onSettled);
+            if (probing) return;
+            for (String url : endpoints) {
+                if (isCandidate(url)) candidates.add(url);
+            }
+            if (candidates.size() < 2) {
+                nothingToProbe = settle();
+            } else {
+                token = accessToken;
+                probeRound = ++round;
+                probing = true;
+                settled = false;
+                pending = candidates.size();
+                lastProbe = clock.uptimeMillis();
+                probed = true;
+            }
+        }
+        if (nothingToProbe != null) {
+            runAll(nothingToProbe);
+            return;
+        }
+        for (String url : candidates) {
+            send(url, token, probeRound);
+        }
+    }
+
+    /** Probes if the last round is older than {@link #REPROBE_INTERVAL_MS}. Cheap; call per request. */
+    public void maybeReprobe() {
+        synchronized (this) {
+            if (endpoints.size() < 2 || probing) return;
+            if (probed && clock.uptimeMillis() - lastProbe < REPROBE_INTERVAL_MS) return;
+        }
+        probe(null);
+    }
+
+    /** The pinned endpoint failed a request; look for a better one unless we just did. */
+    public void onEndpointFailed(String baseUrl) {
+        synchronized (this) {
+            if (endpoints.size() < 2 || probing || baseUrl == null || !baseUrl.equals(current)) return;
+            if (probed && clock.uptimeMillis() - lastProbe < MIN_PROBE_GAP_MS) return;
+        }
+        probe(null);
+    }
+
+    private void send(String url, String token, int probeRound) {
+        Request request = new Request.Builder()
+                .url(url + "api/")
+                .header("Authorization", "Bearer " + token)
+                .build();
+        long startNanos = System.nanoTime();
+        probeClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                finish(probeRound, url, FAILED);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Any answer short of a server error means the path works; a bad token shows up on the real request
+                response.close();
+                long latencyMs = (System.nanoTime() - startNanos) / 1_000_000;
+                finish(probeRound, url, response.code() < 500 ? latencyMs : FAILED);
+            }
+        });
+    }
+
+    private void finish(int probeRound, String url, long latencyMs) {
+        String changed = null;
+        List<Runnable> toRun = null;
+        synchronized (this) {
+            if (probeRound != round) return;
+            latencies.put(url, latencyMs);
+            pending--;
+            if (latencyMs != FAILED && !settled) {
+                if (!url.equals(current)) {
+                    current = url;
+                    changed = url;
+                }
+                toRun = settle();
+            }
+            if (pending == 0) {
+                probing = false;
+                if (!settled) toRun = settle();
+            }
+        }
+        if (changed != null) listener.onEndpointChanged(changed);
+        runAll(toRun);
+    }
+
+    private List<Runnable> settle() {
+        settled = true;
+        List<Runnable> toRun = new ArrayList<>(waiting);
+        waiting.clear();
+        return toRun;
+    }
+
+    private String preferred() {
+        for (String url : endpoints) {
+            if (isCandidate(url)) return url;
+        }
+        return endpoints.isEmpty() ? null : endpoints.get(0);
+    }
+
+    private boolean isCandidate(String url) {
+        return localNetwork || !NetworkGate.isLocalOnly(url);
+    }
+
+    private static void runAll(List<Runnable> runnables) {
+        if (runnables == null) return;
+        for (Runnable runnable : runnables) {
+            runnable.run();
+        }
+    }
+}
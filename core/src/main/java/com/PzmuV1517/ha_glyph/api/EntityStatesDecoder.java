@@ -0,0 +1,72 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.google.gson.stream.JsonReader;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a /api/states response, keeping only entities whose domain is in the filter.
+ * Non-matching entities are skipped without being materialized (see
+ * {@link HomeAssistantEntityTypeAdapter}). Matches are handed out in batches as they are read.
+ */
+public class EntityStatesDecoder {
+    public interface BatchListener {
+        void onEntities(List<HomeAssistantEntity> batch);
+    }
+
+    private final HomeAssistantEntityTypeAdapter entityAdapter;
+    private final String[] domains;
+    private final int batchSize;
+
+    /** @param domains entity domains to keep (e.g. "light"); null or empty keeps everything */
+    public EntityStatesDecoder(String[] domains, int batchSize) {
+        this(new HomeAssistantEntityTypeAdapter(), domains, batchSize);
+    }
+
+    EntityStatesDecoder(HomeAssistantEntityTypeAdapter entityAdapter, String[] domains, int batchSize) {
+        this.entityAdapter = entityAdapter;
+        this.domains = domains != null ? domains : new String[0];
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /** Returns the number of matching entities. */
+    public int decode(Reader source, BatchListener listener) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        List<HomeAssistantEntity> batch = new ArrayList<>(batchSize);
+        int matched = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            HomeAssistantEntity entity = entityAdapter.read(reader, this::matchesDomain);
+            if (entity == null) continue;
+            matched++;
+            batch.add(entity);
+            if (batch.size() >= batchSize) {
+                listener.onEntities(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        reader.endArray();
+
+        if (!batch.isEmpty()) {
+            listener.onEntities(batch);
+        }
+        return matched;
+    }
+
+    public boolean matchesDomain(String entityId) {
+        if (domains.length == 0) return true;
+        for (String domain : domains) {
+            if (entityId.length() > domain.length()
+                    && entityId.charAt(domain.length()) == '.'
+                    && entityId.startsWith(domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,254 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.Metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Live state feed for a single entity over the Home Assistant WebSocket API.
+ * Handles the auth handshake, subscribes with subscribe_entities (falling back to
+ * subscribe_events on servers that don't know it) and reconnects with backoff until closed.
+ */
+public class EntitySubscription {
+    private static final long MIN_RECONNECT_DELAY_MS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MS = 60000;
+
+    private final OkHttpClient client;
+    private final Gson gson;
+    private final String url;
+    private final String accessToken;
+    private final String entityId;
+    private final HomeAssistantApiClient.EntityStateListener listener;
+    private final ScheduledExecutorService reconnectExecutor;
+    private final Metrics.Counter reconnects = Metrics.get().counter("ws.reconnects");
+
+    private WebSocket webSocket;
+    private int nextMessageId = 1;
+    private int subscriptionId = -1;
+    private boolean useSubscribeEntities = true;
+    private boolean subscribed = false;
+    private boolean closed = false;
+    private long reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+
+    // Last known values, needed to apply the compressed diffs of subscribe_entities
+    private String lastState;
+    private String lastFriendlyName;
+    private String lastDeviceClass;
+
+    EntitySubscription(OkHttpClient client, Gson gson, String baseUrl, String accessToken,
+                       String entityId, HomeAssistantApiClient.EntityStateListener listener) {
+        this.client = client;
+        this.gson = gson;
+        this.url = baseUrl + "api/websocket";
+        this.accessToken = accessToken;
+        this.entityId = entityId;
+        this.listener = listener;
+        this.reconnectExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    synchronized void connect() {
+        if (closed) return;
+        nextMessageId = 1;
+        subscriptionId = -1;
+        subscribed = false;
+        Request request = new Request.Builder().url(url).build();
+        webSocket = client.newWebSocket(request, new SocketListener());
+    }
+
+    public synchronized boolean isSubscribed() {
+        return subscribed;
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        subscribed = false;
+        reconnectExecutor.shutdownNow();
+        if (webSocket != null) {
+            webSocket.close(1000, "Subscription closed");
+            webSocket = null;
+        }
+    }
+
+    private synchronized void handleMessage(WebSocket socket, String text) {
+        if (closed || socket != webSocket) return;
+
+        // subscribe_events delivers every state change in the house; skip the ones we don't care about cheaply
+        if (!useSubscribeEntities && subscribed && !text.contains(entityId)) return;
+
+        JsonObject message;
+        try {
+            message = JsonParser.parseString(text).getAsJsonObject();
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        String type = getString(message, "type");
+        if (type == null) return;
+
+        switch (type) {
+            case "auth_required": {
+                JsonObject auth = new JsonObject();
+                auth.addProperty("type", "auth");
+                auth.addProperty("access_token", accessToken);
+                socket.send(auth.toString());
+                break;
+            }
+            case "auth_ok":
+                sendSubscribe(socket);
+                break;
+            case "auth_invalid":
+                // A bad token won't get better by retrying; report and stay down
+                closed = true;
+                reconnectExecutor.shutdownNow();
+                socket.close(1000, "Auth invalid");
+                webSocket = null;
+                listener.onDisconnected("Authentication failed: " + getString(message, "message"), false);
+                break;
+            case "result":
+                handleResult(socket, message);
+                break;
+            case "event":
+                if (message.has("id") && message.get("id").getAsInt() == subscriptionId) {
+                    handleEvent(message.getAsJsonObject("event"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void sendSubscribe(WebSocket socket) {
+        subscriptionId = nextMessageId++;
+        JsonObject subscribe = new JsonObject();
+        subscribe.addProperty("id", subscriptionId);
+        if (useSubscribeEntities) {
+            subscribe.addProperty("type", "subscribe_entities");
+            JsonArray ids = new JsonArray();
+            ids.add(entityId);
+            subscribe.add("entity_ids", ids);
+        } else {
+            subscribe.addProperty("type", "subscribe_events");
+            subscribe.addProperty("event_type", "state_changed");
+        }
+        socket.send(subscribe.toString());
+    }
+
+    private void handleResult(WebSocket socket, JsonObject message) {
+        if (!message.has("id") || message.get("id").getAsInt() != subscriptionId) return;
+
+        boolean success = message.has("success") && message.get("success").getAsBoolean();
+        if (success) {
+            subscribed = true;
+            reconnectDelayMs = MIN_RECONNECT_DELAY_MS;
+            listener.onSubscribed();
+        } else if (useSubscribeEntities) {
+            // Older Home Assistant releases have no subscribe_entities; use the generic event bus
+            useSubscribeEntities = false;
+            sendSubscribe(socket);
+        } else {
+            socket.close(1000, "Subscribe failed");
+        }
+    }
+
+    private void handleEvent(JsonObject event) {
+        if (event == null) return;
+
+        if (useSubscribeEntities) {
+            // Full state on subscribe ("a"), compressed diffs afterwards ("c")
+            JsonObject added = event.getAsJsonObject("a");
+            if (added != null && added.has(entityId)) {
+                JsonObject compressed = added.getAsJsonObject(entityId);
+                lastState = getString(compressed, "s");
+                JsonObject attributes = compressed.getAsJsonObject("a");
+                lastFriendlyName = attributes != null ? getString(attributes, "friendly_name") : null;
+                lastDeviceClass = attributes != null ? getString(attributes, "device_class") : null;
+                dispatchState();
+            }
+
+            JsonObject changed = event.getAsJsonObject("c");
+            if (changed != null && changed.has(entityId)) {
+                JsonObject additions = changed.getAsJsonObject(entityId).getAsJsonObject("+");
+                if (additions != null) {
+                    if (additions.has("s")) lastState = getString(additions, "s");
+                    JsonObject attributes = additions.getAsJsonObject("a");
+                    if (attributes != null) {
+                        if (attributes.has("friendly_name")) lastFriendlyName = getString(attributes, "friendly_name");
+                        if (attributes.has("device_class")) lastDeviceClass = getString(attributes, "device_class");
+                    }
+                    dispatchState();
+                }
+            }
+        } else {
+            JsonObject data = event.getAsJsonObject("data");
+            if (data == null || !entityId.equals(getString(data, "entity_id"))) return;
+            JsonElement newState = data.get("new_state");
+            if (newState != null && newState.isJsonObject()) {
+                listener.onEntityState(gson.fromJson(newState, HomeAssistantEntity.class));
+            }
+        }
+    }
+
+    private void dispatchState() {
+        if (lastState == null) return;
+        listener.onEntityState(new HomeAssistantEntity(entityId, lastState,
+                lastFriendlyName != null ? lastFriendlyName : entityId, lastDeviceClass));
+    }
+
+    private synchronized void handleDisconnect(WebSocket socket, String reason) {
+        if (closed || socket != webSocket) return;
+        webSocket = null;
+        subscribed = false;
+        listener.onDisconnected(reason, true);
+
+        reconnects.increment();
+        long delay = reconnectDelayMs;
+        reconnectDelayMs = Math.min(reconnectDelayMs * 2, MAX_RECONNECT_DELAY_MS);
+        try {
+            reconnectExecutor.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException ignore) {
+            // executor shut down by close()
+        }
+    }
+
+    private static String getString(JsonObject object, String key) {
+        JsonElement element = object.get(key);
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+
+    private class SocketListener extends WebSocketListener {
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            handleMessage(webSocket, text);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            handleDisconnect(webSocket, "Socket closed: " + code);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            handleDisconnect(webSocket, "Socket failure: " + t.getMessage());
+        }
+    }
+}
@@ -0,0 +1,740 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.Clock;
+import com.PzmuV1517.ha_glyph.util.LatencyTracker;
+import com.PzmuV1517.ha_glyph.util.Metrics;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+public class HomeAssistantApiClient {
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int STATES_BATCH_SIZE = 50;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+    public static final double DEFAULT_HEDGE_BUDGET = 0.1;
+    static final long MIN_HEDGE_DELAY_MS = 20;
+    private static final long NO_HEDGE = -1;
+    private static final double MAX_HEDGE_CREDITS = 10;
+    private static final int LATENCY_SAMPLES = 100;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static volatile ScheduledThreadPoolExecutor hedgeScheduler;
+    private final OkHttpClient client;
+    private final Gson gson;
+    private final HomeAssistantEntityTypeAdapter entityAdapter;
+    private final Clock clock;
+    private final EndpointSelector endpoints;
+    private volatile EndpointSelector.Listener endpointListener;
+    private volatile String accessToken;
+
+    // One breaker per host:port; requests to a host that keeps failing fail fast
+    private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+
+    // Single-flight state fetches, keyed by entity id
+    private final Map<String, InFlightFetch> inFlightFetches = new HashMap<>();
+    private final Map<String, DeliveredState> deliveredStates = new HashMap<>();
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    // Hedged state fetches: a duplicate goes out once a fetch is slower than the percentile
+    // of recent ones, paid for from a budget so hedges stay a fraction of requests
+    private final LatencyTracker stateLatency = new LatencyTracker(LATENCY_SAMPLES, MIN_LATENCY_SAMPLES);
+    private final Object hedgeLock = new Object();
+    private double hedgeCredits = 0;
+    private volatile double hedgeBudget = DEFAULT_HEDGE_BUDGET;
+    private volatile double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+
+    // Latency per endpoint, from enqueue to the response being handled
+    private final Metrics.Histogram testConnectionLatency = Metrics.get().histogram("api.testConnection.ms", Metrics.LATENCY_MS_BUCKETS);
+    private final Metrics.Histogram statesLatency = Metrics.get().histogram("api.getStates.ms", Metrics.LATENCY_MS_BUCKETS);
+    private final Metrics.Histogram entityStateLatency = Metrics.get().histogram("api.getEntityState.ms", Metrics.LATENCY_MS_BUCKETS);
+    private final Metrics.Histogram serviceLatency = Metrics.get().histogram("api.callService.ms", Metrics.LATENCY_MS_BUCKETS);
+    private final Metrics.Counter requestErrors = Metrics.get().counter("api.errors");
+    private final Metrics.Counter circuitOpened = Metrics.get().counter("api.circuit.opened");
+    private final Metrics.Counter circuitRejected = Metrics.get().counter("api.circuit.rejected");
+    private final Metrics.Counter endpointSwitches = Metrics.get().counter("api.endpoint.switches");
+    private final Metrics.Counter coalescedCalls = Metrics.get().counter("api.state.coalesced");
+    private final Metrics.Counter staleResponses = Metrics.get().counter("api.state.stale");
+    private final Metrics.Counter hedgesSent = Metrics.get().counter("api.hedges");
+    // Hedges that answered before the request they duplicated
+    private final Metrics.Counter hedgesWon = Metrics.get().counter("api.hedges.won");
+    // Hedges due but not sent, for lack of budget or because the breaker wasn't closed
+    private final Metrics.Counter hedgesSkipped = Metrics.get().counter("api.hedges.skipped");
+
+    private static class InFlightFetch {
+        final long sequence;
+        final List<ApiCallback<HomeAssistantEntity>> callbacks = new ArrayList<>();
+
+        InFlightFetch(long sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    // The newest state handed out for an entity, and the fetch it came from
+    private static class DeliveredState {
+        final long sequence;
+        final HomeAssistantEntity entity;
+
+        DeliveredState(long sequence, HomeAssistantEntity entity) {
+            this.sequence = sequence;
+            this.entity = entity;
+        }
+    }
+
+    /**
+     * Results of a request; exactly one of the two methods is called. A request failed fast
+     * (not configured, circuit open) reports on the calling thread.
+     */
+    public interface ApiCallback<T> {
+        void onSuccess(T result);
+        void onError(ApiError error);
+    }
+
+    public interface StatesStreamCallback {
+        void onEntities(List<HomeAssistantEntity> batch);
+        void onComplete(int total);
+        void onError(ApiError error);
+    }
+
+    public interface EntityStateListener {
+        void onSubscribed();
+        void onEntityState(HomeAssistantEntity entity);
+        void onDisconnected(String reason, boolean willRetry);
+    }
+
+    public HomeAssistantApiClient() {
+        this(HttpTransport.get().client());
+    }
+
+    HomeAssistantApiClient(OkHttpClient client) {
+        this(client, Clock.SYSTEM);
+    }
+
+    HomeAssistantApiClient(OkHttpClient client, Clock clock) {
+        this.client = client;
+        this.clock = clock;
+        this.endpoints = new EndpointSelector(client, clock, this::onEndpointChanged);
+        this.entityAdapter = new HomeAssistantEntityTypeAdapter();
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(HomeAssistantEntity.class, entityAdapter)
+                .create();
+    }
+
+    public void configure(String baseUrl, String accessToken) {
+        configure(Collections.singletonList(baseUrl), accessToken);
+    }
+
+    /**
+     * Configures one server reachable under several base URLs, best first (e.g. LAN, then
+     * remote). Requests go to whichever {@link EndpointSelector} has pinned.
+     */
+    public void configure(List<String> baseUrls, String accessToken) {
+        this.accessToken = accessToken;
+        synchronized (inFlightFetches) {
+            deliveredStates.clear(); // states of the old server say nothing about the new one
+        }
+        endpoints.configure(baseUrls, accessToken);
+    }
+
+    /**
+     * Warms up a connection to the configured server; see {@link HttpTransport#preconnect}.
+     * With several base URLs, probes them instead, which warms the one that wins.
+     */
+    public void preconnect() {
+        if (!isConfigured()) return;
+        if (endpoints.getEndpoints().size() > 1) {
+            endpoints.probe(null);
+        } else {
+            HttpTransport.get().preconnect(endpoints.current());
+        }
+    }
+
+    public boolean isConfigured() {
+        return endpoints.current() != null && accessToken != null;
+    }
+
+    /** Breaker of the host requests go to now, or null if not configured. */
+    public CircuitBreaker getCircuitBreaker() {
+        String baseUrl = endpoints.current();
+        HttpUrl url = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+        return url != null ? breakerFor(url) : null;
+    }
+
+    /** Base URL requests go to now, ending in '/', or null if not configured. */
+    public String getEndpoint() {
+        return endpoints.current();
+    }
+
+    /** Last probe latency per configured base URL; see {@link EndpointSelector#getLatencies()}. */
+    public Map<String, Long> getEndpointLatencies() {
+        return endpoints.getLatencies();
+    }
+
+    /** Told when requests move to another base URL, e.g. to reopen a WebSocket there. */
+    public void setEndpointListener(EndpointSelector.Listener listener) {
+        this.endpointListener = listener;
+    }
+
+    /** Whether LAN-only base URLs can work on the current network; see {@link EndpointSelector#setLocalNetwork}. */
+    public void setLocalNetwork(boolean localNetwork) {
+        endpoints.setLocalNetwork(localNetwork);
+    }
+
+    /** Probes the base URLs again, e.g. after a network change. */
+    public void probeEndpoints() {
+        endpoints.probe(null);
+    }
+
+    /**
+     * Checks the token against the server. With several base URLs, probes them first so the
+     * check goes to the fastest one that answers.
+     */
+    public void testConnection(ApiCallback<Boolean> callback) {
+        if (!isConfigured()) {
+            callback.onError(ApiError.notConfigured());
+            return;
+        }
+        endpoints.probe(() -> sendTestConnection(callback));
+    }
+
+    private void sendTestConnection(ApiCallback<Boolean> callback) {
+        String baseUrl = endpoints.current();
+        Request request = new Request.Builder()
+                .url(baseUrl + "api/")
+                .header("Authorization", "Bearer " + accessToken)
+                .build();
+
+        enqueue(request, testConnectionLatency, "Connection failed", callback::onError, response -> {
+            if (response.isSuccessful()) {
+                callback.onSuccess(true);
+            } else {
+                callback.onError(ApiError.fromStatus(response.code(), response.message()));
+            }
+        });
+    }
+
+    public void getStates(ApiCallback<List<HomeAssistantEntity>> callback) {
+        if (!isConfigured()) {
+            callback.onError(ApiError.notConfigured());
+            return;
+        }
+
+        String baseUrl = endpoints.current();
+        Request request = new Request.Builder()
+                .url(baseUrl + "api/states")
+                .header("Authorization", "Bearer " + accessToken)
+                .build();
+
+        enqueue(request, statesLatency, "Failed to get states", callback::onError, response -> {
+            if (!response.isSuccessful()) {
+                callback.onError(ApiError.fromStatus(response.code(), response.message()));
+                return;
+            }
+            List<HomeAssistantEntity> entities;
+            try {
+                Type listType = new TypeToken<List<HomeAssistantEntity>>(){}.getType();
+                entities = gson.fromJson(response.body().charStream(), listType);
+            } catch (RuntimeException e) {
+                callback.onError(ApiError.parse("Failed to read states", e));
+                return;
+            }
+            callback.onSuccess(entities);
+        });
+    }
+
+    /**
+     * Streams /api/states, delivering only entities in the given domains, in batches, as the
+     * response is read. Decoding happens on OkHttp's thread; so do the callbacks.
+     */
+    public void streamStates(String[] domains, StatesStreamCallback callback) {
+        if (!isConfigured()) {
+            callback.onError(ApiError.notConfigured());
+            return;
+        }
+
+        String baseUrl = endpoints.current();
+        Request request = new Request.Builder()
+                .url(baseUrl + "api/states")
+                .header("Authorization", "Bearer " + accessToken)
+                .build();
+
+        enqueue(request, statesLatency, "Failed to get states", callback::onError, response -> {
+            if (!response.isSuccessful()) {
+                callback.onError(ApiError.fromStatus(response.code(), response.message()));
+                return;
+            }
+            int total;
+            try {
+                EntityStatesDecoder decoder = new EntityStatesDecoder(entityAdapter, domains, STATES_BATCH_SIZE);
+                total = decoder.decode(response.body().charStream(), callback::onEntities);
+            } catch (IOException e) {
+                callback.onError(ApiError.fromException("Failed to read states", e));
+                return;
+            } catch (RuntimeException e) {
+                callback.onError(ApiError.parse("Failed to read states", e));
+                return;
+            }
+            callback.onComplete(total);
+        });
+    }
+
+    /**
+     * Fetches the entity's state. Concurrent calls for the same entity share one in-flight
+     * request and all receive its result, unless a later fetch has already handed out a
+     * newer state: then they receive that one.
+     */
+    public void getEntityState(String entityId, ApiCallback<HomeAssistantEntity> callback) {
+        fetchEntityState(entityId, callback, false);
+    }
+
+    /**
+     * Like getEntityState, but always starts a new request (e.g. right after a service call),
+     * since a request already in flight may have been answered before the change.
+     */
+    public void refreshEntityState(String entityId, ApiCallback<HomeAssistantEntity> callback) {
+        fetchEntityState(entityId, callback, true);
+    }
+
+    /**
+     * Tunes hedging of state fetches: a fetch still unanswered after the given percentile
+     * (0..1) of recent fetch latencies is sent once more, and each fetch earns {@code budget}
+     * (0..1) of a hedge, so hedges can never more than double the load. A percentile of 0
+     * turns hedging off.
+     */
+    public void setHedging(double percentile, double budget) {
+        if (percentile < 0 || percentile > 1 || budget < 0 || budget > 1) {
+            throw new IllegalArgumentException("Percentile and budget must be within 0..1");
+        }
+        hedgePercentile = percentile;
+        hedgeBudget = budget;
+    }
+
+    /** Recent state fetch latencies the hedge delay is taken from. */
+    LatencyTracker getStateLatency() {
+        return stateLatency;
+    }
+
+    private void fetchEntityState(String entityId, ApiCallback<HomeAssistantEntity> callback, boolean forceNew) {
+        if (!isConfigured()) {
+            callback.onError(ApiError.notConfigured());
+            return;
+        }
+
+        InFlightFetch fetch;
+        synchronized (inFlightFetches) {
+            InFlightFetch existing = inFlightFetches.get(entityId);
+            if (existing != null && !forceNew) {
+                existing.callbacks.add(callback);
+                coalescedCalls.increment();
+                return;
+            }
+            // A forced fetch becomes the one later callers join; the older one still completes
+            fetch = new InFlightFetch(nextSequence.incrementAndGet());
+            fetch.callbacks.add(callback);
+            inFlightFetches.put(entityId, fetch);
+        }
+
+        Request request = new Request.Builder()
+                .url(endpoints.current() + "api/states/" + entityId)
+                .header("Authorization", "Bearer " + accessToken)
+                .build();
+
+        enqueueHedged(request, entityStateLatency, "Failed to get entity state",
+                error -> completeFetch(entityId, fetch, null, error), response -> {
+            if (!response.isSuccessful()) {
+                completeFetch(entityId, fetch, null, ApiError.fromStatus(response.code(), response.message()));
+                return;
+            }
+            HomeAssistantEntity entity;
+            try {
+                entity = gson.fromJson(response.body().charStream(), HomeAssistantEntity.class);
+                // An empty body, or an object without a usable entity_id, decodes to null
+                if (entity == null) throw new JsonParseException("No entity in response");
+            } catch (RuntimeException e) {
+                completeFetch(entityId, fetch, null, ApiError.parse("Failed to parse entity state", e));
+                return;
+            }
+            completeFetch(entityId, fetch, entity, null);
+        });
+    }
+
+    private interface ResponseHandler {
+        void onResponse(Response response) throws IOException;
+    }
+
+    /**
+     * Sends the request unless the host's breaker is open, in which case {@code onError}
+     * gets a CIRCUIT_OPEN error right away. Network failures go to {@code onError} with
+     * their kind; responses go to the handler and are closed afterwards. A host failure
+     * makes the endpoint selector look for a better base URL.
+     */
+    private void enqueue(Request request, Metrics.Histogram latency, String failurePrefix,
+                         Consumer<ApiError> onError, ResponseHandler handler) {
+        Exchange exchange = new Exchange(request, latency, failurePrefix, onError, handler);
+        if (!exchange.admit()) return;
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                exchange.finish(null, e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                exchange.finish(response, null);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #enqueue}, but if no answer has come within the hedge delay, sends the
+     * request once more and takes whichever usable answer comes first, cancelling the
+     * other. Only for idempotent requests.
+     */
+    private void enqueueHedged(Request request, Metrics.Histogram latency, String failurePrefix,
+                               Consumer<ApiError> onError, ResponseHandler handler) {
+        Exchange exchange = new Exchange(request, latency, failurePrefix, onError, handler);
+        if (!exchange.admit()) return;
+
+        new HedgedCall(exchange).start(hedgeDelayMs());
+    }
+
+    /** One logical request: where it goes, how it's measured and who hears about the result. */
+    private class Exchange {
+        final Request request;
+        final Metrics.Histogram latency;
+        final String failurePrefix;
+        final Consumer<ApiError> onError;
+        final ResponseHandler handler;
+        final String baseUrl;
+        final CircuitBreaker hostBreaker;
+        final long startNanos = System.nanoTime();
+
+        Exchange(Request request, Metrics.Histogram latency, String failurePrefix,
+                 Consumer<ApiError> onError, ResponseHandler handler) {
+            this.request = request;
+            this.latency = latency;
+            this.failurePrefix = failurePrefix;
+            this.onError = onError;
+            this.handler = handler;
+            // The endpoint the request was built for; the pinned one may have changed since
+            this.baseUrl = endpointOf(request.url());
+            this.hostBreaker = breakerFor(request.url());
+            endpoints.maybeReprobe();
+        }
+
+        /** False if the host's breaker is open; {@code onError} has been told then. */
+        boolean admit() {
+            if (hostBreaker.tryAcquire()) return true;
+            endpoints.onEndpointFailed(baseUrl);
+            circuitRejected.increment();
+            onError.accept(ApiError.circuitOpen(hostBreaker.retryInMs()));
+            return false;
+        }
+
+        /** Reports the outcome; exactly one of {@code response} and {@code failure} is set. */
+        void finish(Response response, IOException failure) {
+            if (failure != null) {
+                ApiError error = ApiError.fromException(failurePrefix, failure);
+                record(latency, startNanos, true);
+                report(error);
+                onError.accept(error);
+                return;
+            }
+            record(latency, startNanos, !response.isSuccessful());
+            report(response.isSuccessful() ? null : ApiError.fromStatus(response.code(), response.message()));
+            try {
+                handler.onResponse(response);
+            } catch (IOException e) {
+                onError.accept(ApiError.fromException(failurePrefix, e));
+            } finally {
+                response.close();
+            }
+        }
+
+        // Tells the breaker and the endpoint selector how the host did; null means fine
+        private void report(ApiError error) {
+            if (error == null || !error.isHostFailure()) {
+                hostBreaker.onSuccess();
+                return;
+            }
+            if (hostBreaker.onFailure()) circuitOpened.increment();
+            endpoints.onEndpointFailed(baseUrl);
+        }
+    }
+
+    /**
+     * An exchange sent up to twice. The first answer that isn't a host failure wins and the
+     * other call is cancelled; a failed attempt waits for the other one, if any, before
+     * reporting. The breaker and the latency histogram see one request either way.
+     */
+    private class HedgedCall {
+        private final Exchange exchange;
+        private final Call[] calls = new Call[2];
+        private final long[] sentNanos = new long[2];
+        private int sent;
+        private int outstanding;
+        private boolean done;
+        private ScheduledFuture<?> hedgeTimer;
+
+        HedgedCall(Exchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void start(long hedgeDelayMs) {
+            earnHedgeCredit();
+            send();
+            if (hedgeDelayMs == NO_HEDGE) return;
+            synchronized (this) {
+                if (done) return;
+                hedgeTimer = hedgeScheduler().schedule(this::hedge, hedgeDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (done) return;
+            }
+            // A half-open breaker lets exactly one probe through; don't add a second
+            if (exchange.hostBreaker.getState() != CircuitBreaker.State.CLOSED || !spendHedgeCredit()) {
+                hedgesSkipped.increment();
+                return;
+            }
+            hedgesSent.increment();
+            send();
+        }
+
+        private void send() {
+            Call call = client.newCall(exchange.request);
+            int attempt;
+            synchronized (this) {
+                if (done) return;
+                attempt = sent++;
+                calls[attempt] = call;
+                sentNanos[attempt] = System.nanoTime();
+                outstanding++;
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    attemptDone(attempt, null, e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    attemptDone(attempt, response, null);
+                }
+            });
+        }
+
+        private void attemptDone(int attempt, Response response, IOException failure) {
+            boolean usable = response != null
+                    && (response.isSuccessful() || !ApiError.fromStatus(response.code(), response.message()).isHostFailure());
+            Call loser = null;
+            long loserSentNanos = 0;
+            synchronized (this) {
+                outstanding--;
+                if (done || (!usable && outstanding > 0)) {
+                    // Cancelled, or failed while the other attempt may still answer
+                    if (response != null) response.close();
+                    return;
+                }
+                done = true;
+                if (hedgeTimer != null) hedgeTimer.cancel(false);
+                if (outstanding > 0) {
+                    loser = calls[1 - attempt];
+                    loserSentNanos = sentNanos[1 - attempt];
+                }
+            }
+            long now = System.nanoTime();
+            if (usable) stateLatency.record((now - sentNanos[attempt]) / 1_000_000);
+            if (loser != null) {
+                // Still waiting when cancelled: at least this slow, and leaving it out would
+                // hide exactly the tail the hedge delay is meant to track
+                stateLatency.record((now - loserSentNanos) / 1_000_000);
+                loser.cancel();
+            }
+            if (usable && attempt == 1) hedgesWon.increment();
+            exchange.finish(response, failure);
+        }
+    }
+
+    private long hedgeDelayMs() {
+        double percentile = hedgePercentile;
+        if (percentile <= 0) return NO_HEDGE;
+        long observed = stateLatency.percentile(percentile);
+        if (observed == LatencyTracker.UNKNOWN) return NO_HEDGE;
+        return Math.max(MIN_HEDGE_DELAY_MS, observed);
+    }
+
+    // Every hedgeable request earns a fraction of a hedge; a hedge spends a whole one
+    private void earnHedgeCredit() {
+        synchronized (hedgeLock) {
+            hedgeCredits = Math.min(MAX_HEDGE_CREDITS, hedgeCredits + hedgeBudget);
+        }
+    }
+
+    private boolean spendHedgeCredit() {
+        synchronized (hedgeLock) {
+            if (hedgeCredits < 1) return false;
+            hedgeCredits -= 1;
+            return true;
+        }
+    }
+
+    private static ScheduledExecutorService hedgeScheduler() {
+        ScheduledThreadPoolExecutor scheduler = hedgeScheduler;
+        if (scheduler == null) {
+            synchronized (HomeAssistantApiClient.class) {
+                scheduler = hedgeScheduler;
+                if (scheduler == null) {
+                    scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                        Thread thread = new Thread(runnable, "ha-hedge-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    scheduler.setRemoveOnCancelPolicy(true);
+                    hedgeScheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private CircuitBreaker breakerFor(HttpUrl url) {
+        String host = url.host() + ":" + url.port();
+        synchronized (breakers) {
+            CircuitBreaker hostBreaker = breakers.get(host);
+            if (hostBreaker == null) {
+                hostBreaker = new CircuitBreaker(clock);
+                breakers.put(host, hostBreaker);
+            }
+            return hostBreaker;
+        }
+    }
+
+    // The configured base URL {@code url} lies under, or null
+    private String endpointOf(HttpUrl url) {
+        String target = url.toString();
+        for (String endpoint : endpoints.getEndpoints()) {
+            HttpUrl base = HttpUrl.parse(endpoint);
+            if (base != null && target.startsWith(base.toString())) return endpoint;
+        }
+        return null;
+    }
+
+    private void onEndpointChanged(String baseUrl) {
+        endpointSwitches.increment();
+        // The probe just got an answer from it; earlier failures don't count any more
+        breakerFor(HttpUrl.parse(baseUrl)).reset();
+        EndpointSelector.Listener listener = endpointListener;
+        if (listener != null) listener.onEndpointChanged(baseUrl);
+    }
+
+    private void record(Metrics.Histogram latency, long startNanos, boolean failed) {
+        latency.record((System.nanoTime() - startNanos) / 1_000_000);
+        if (failed) requestErrors.increment();
+    }
+
+    private void completeFetch(String entityId, InFlightFetch fetch, HomeAssistantEntity entity, ApiError error) {
+        List<ApiCallback<HomeAssistantEntity>> callbacks;
+        synchronized (inFlightFetches) {
+            inFlightFetches.remove(entityId, fetch);
+            callbacks = new ArrayList<>(fetch.callbacks);
+
+            // Anything older than a state already handed out for this entity is replaced by it
+            DeliveredState delivered = deliveredStates.get(entityId);
+            if (delivered != null && delivered.sequence > fetch.sequence) {
+                staleResponses.increment();
+                entity = delivered.entity;
+            } else if (entity != null) {
+                deliveredStates.put(entityId, new DeliveredState(fetch.sequence, entity));
+            }
+        }
+
+        for (ApiCallback<HomeAssistantEntity> callback : callbacks) {
+            if (entity != null) {
+                callback.onSuccess(entity);
+            } else {
+                callback.onError(error);
+            }
+        }
+    }
+
+    /**
+     * Opens a WebSocket subscription that pushes every state change of the entity.
+     * Callbacks arrive on OkHttp's threads; close the returned subscription to stop it.
+     */
+    public EntitySubscription subscribeEntity(String entityId, EntityStateListener listener) {
+        if (!isConfigured()) {
+            return null;
+        }
+
+        EntitySubscription subscription = new EntitySubscription(client, gson, endpoints.current(), accessToken, entityId, listener);
+        subscription.connect();
+        return subscription;
+    }
+
+    public void toggleEntity(String entityId, ApiCallback<Boolean> callback) {
+        callService("homeassistant", "toggle", entityId, callback);
+    }
+
+    public void turnOnEntity(String entityId, ApiCallback<Boolean> callback) {
+        callService("homeassistant", "turn_on", entityId, callback);
+    }
+
+    public void turnOffEntity(String entityId, ApiCallback<Boolean> callback) {
+        callService("homeassistant", "turn_off", entityId, callback);
+    }
+
+    private void callService(String domain, String service, String entityId, ApiCallback<Boolean> callback) {
+        if (!isConfigured()) {
+            callback.onError(ApiError.notConfigured());
+            return;
+        }
+
+        JsonObject requestJson = new JsonObject();
+        requestJson.addProperty("entity_id", entityId);
+
+        RequestBody body = RequestBody.create(requestJson.toString(), JSON);
+        String baseUrl = endpoints.current();
+        Request request = new Request.Builder()
+                .url(baseUrl + "api/services/" + domain + "/" + service)
+                .header("Authorization", "Bearer " + accessToken)
+                .post(body)
+                .build();
+
+        enqueue(request, serviceLatency, "Failed to call service", callback::onError, response -> {
+            if (response.isSuccessful()) {
+                callback.onSuccess(true);
+            } else {
+                callback.onError(ApiError.fromStatus(response.code(), response.message()));
+            }
+        });
+    }
+}
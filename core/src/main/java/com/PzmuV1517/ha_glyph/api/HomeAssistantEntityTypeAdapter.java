@@ -0,0 +1,143 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hand-written Gson binding for {@link HomeAssistantEntity}. Reads entity_id, state,
+ * friendly_name and device_class and skips every other field and attribute unparsed, so
+ * large media_player/climate attribute trees cost a scan rather than a reflective walk.
+ * State values and domains repeat across thousands of entities and are shared through a
+ * small pool instead of being kept as separate copies.
+ */
+public class HomeAssistantEntityTypeAdapter extends TypeAdapter<HomeAssistantEntity> {
+    // Bounded so free-form states (sensor readings) can't grow the pool without limit
+    private static final int MAX_POOLED_STRINGS = 512;
+    private static final int MAX_POOLED_LENGTH = 32;
+    private static final int MAX_DOMAINS = 64;
+
+    /** Decides from the entity_id alone whether an entity is worth reading. */
+    interface EntityFilter {
+        boolean accept(String entityId);
+    }
+
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<>();
+    // Copy-on-write; a handful of domains covers an entire instance
+    private volatile String[] domains = new String[0];
+
+    @Override
+    public HomeAssistantEntity read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return read(in, null);
+    }
+
+    /**
+     * Reads one entity object. Returns null, with the object fully consumed, when it has no
+     * entity_id or the filter rejects it.
+     */
+    HomeAssistantEntity read(JsonReader in, EntityFilter filter) throws IOException {
+        String entityId = null;
+        String state = null;
+        String friendlyName = null;
+        String deviceClass = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("entity_id".equals(name) && in.peek() == JsonToken.STRING) {
+                entityId = in.nextString();
+                if (filter != null && !filter.accept(entityId)) {
+                    // Not interesting: skip whatever is left of this entity
+                    while (in.hasNext()) {
+                        in.skipValue();
+                    }
+                    in.endObject();
+                    return null;
+                }
+            } else if ("state".equals(name) && in.peek() == JsonToken.STRING) {
+                state = canonical(in.nextString());
+            } else if ("attributes".equals(name) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    String attribute = in.nextName();
+                    if ("friendly_name".equals(attribute) && in.peek() == JsonToken.STRING) {
+                        friendlyName = in.nextString();
+                    } else if ("device_class".equals(attribute) && in.peek() == JsonToken.STRING) {
+                        deviceClass = canonical(in.nextString());
+                    } else {
+                        in.skipValue();
+                    }
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (entityId == null) return null;
+        if (state == null) state = "unknown";
+        return new HomeAssistantEntity(entityId, domainOf(entityId), state, friendlyName, deviceClass);
+    }
+
+    // Matches against known domains in place so the common case allocates no substring
+    private String domainOf(String entityId) {
+        int dot = entityId.indexOf('.');
+        if (dot <= 0) return null;
+        String[] known = domains;
+        for (String domain : known) {
+            if (domain.length() == dot && entityId.startsWith(domain)) return domain;
+        }
+        String domain = canonical(entityId.substring(0, dot));
+        synchronized (this) {
+            known = domains;
+            if (known.length < MAX_DOMAINS) {
+                for (String d : known) {
+                    if (d.equals(domain)) return d;
+                }
+                String[] grown = Arrays.copyOf(known, known.length + 1);
+                grown[known.length] = domain;
+                domains = grown;
+            }
+        }
+        return domain;
+    }
+
+    @Override
+    public void write(JsonWriter out, HomeAssistantEntity entity) throws IOException {
+        if (entity == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("entity_id").value(entity.getEntityId());
+        out.name("state").value(entity.getState());
+        HomeAssistantEntity.Attributes attributes = entity.getAttributes();
+        if (attributes != null) {
+            out.name("attributes").beginObject();
+            if (attributes.getFriendlyName() != null) out.name("friendly_name").value(attributes.getFriendlyName());
+            if (attributes.getDeviceClass() != null) out.name("device_class").value(attributes.getDeviceClass());
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    private String canonical(String value) {
+        if (value.length() > MAX_POOLED_LENGTH) return value;
+        String pooled = pool.get(value);
+        if (pooled != null) return pooled;
+        if (pool.size() >= MAX_POOLED_STRINGS) return value;
+        pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
@@ -0,0 +1,184 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.util.Metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one OkHttpClient of the process, shared by the app and the toy service so they share
+ * a connection pool, dispatcher and TLS session cache. Idle connections outlive the poll
+ * interval by a wide margin, DNS answers are cached, and connection setup is counted in
+ * {@link Metrics} so reuse can be checked: in steady state every poll should reuse a pooled
+ * connection, leaving http.connections.opened flat while http.connections.acquired grows.
+ */
+public final class HttpTransport {
+    // Polls come every few seconds; keep a spare connection warm well past that
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long DNS_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+    // How long past its TTL an answer may stand in for a failed lookup
+    private static final long DNS_MAX_STALE_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long WEBSOCKET_PING_SECONDS = 30;
+
+    private static volatile HttpTransport instance;
+
+    private final OkHttpClient client;
+    private final CachingDns dns = new CachingDns(Dns.SYSTEM, DNS_TTL_MS, DNS_MAX_STALE_MS);
+    private final Metrics.Counter connectionsAcquired = Metrics.get().counter("http.connections.acquired");
+    private final Metrics.Counter connectionsOpened = Metrics.get().counter("http.connections.opened");
+    private final Metrics.Counter tlsHandshakes = Metrics.get().counter("http.tls.handshakes");
+    private final Metrics.Counter dnsLookups = Metrics.get().counter("http.dns.lookups");
+    private final Metrics.Counter preconnects = Metrics.get().counter("http.preconnects");
+
+    public static HttpTransport get() {
+        HttpTransport transport = instance;
+        if (transport == null) {
+            synchronized (HttpTransport.class) {
+                transport = instance;
+                if (transport == null) {
+                    transport = new HttpTransport();
+                    instance = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    private HttpTransport() {
+        client = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .pingInterval(WEBSOCKET_PING_SECONDS, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(dns)
+                .eventListener(new ConnectionCounter())
+                .build();
+    }
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    /**
+     * Opens (or keeps warm) a connection to the server so the next real request skips DNS,
+     * TCP and TLS setup. The pool can't be asked about one host, so a HEAD always goes out;
+     * over a pooled connection it costs a round trip. It is left out of the connection
+     * counters. Does nothing if the URL is bad.
+     */
+    public void preconnect(String baseUrl) {
+        HttpUrl url = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+        if (url == null) return;
+
+        preconnects.increment();
+        Request request = new Request.Builder().url(url).head().tag(Preconnect.class, Preconnect.TAG).build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                // Best effort; the real request will report the problem
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+
+    /** Forgets cached DNS answers, e.g. after a network change made them meaningless. */
+    public void flushDns() {
+        dns.flush();
+    }
+
+    // Marks preconnect calls, which ConnectionCounter leaves out
+    private enum Preconnect { TAG }
+
+    private class ConnectionCounter extends EventListener {
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            if (counted(call)) connectionsOpened.increment();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            if (counted(call)) tlsHandshakes.increment();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (counted(call)) connectionsAcquired.increment();
+        }
+
+        private boolean counted(Call call) {
+            return call.request().tag(Preconnect.class) == null;
+        }
+    }
+
+    /**
+     * Keeps lookups for a while and falls back to the last answer if a refresh fails, as long
+     * as it expired less than {@code maxStaleMs} ago.
+     */
+    private class CachingDns implements Dns {
+        private final Dns delegate;
+        private final long ttlMs;
+        private final long maxStaleMs;
+        private final ConcurrentHashMap<String, CachedLookup> cache = new ConcurrentHashMap<>();
+
+        CachingDns(Dns delegate, long ttlMs, long maxStaleMs) {
+            this.delegate = delegate;
+            this.ttlMs = ttlMs;
+            this.maxStaleMs = maxStaleMs;
+        }
+
+        void flush() {
+            cache.clear();
+        }
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            long now = System.currentTimeMillis();
+            CachedLookup cached = cache.get(hostname);
+            if (cached != null && now < cached.expiresAt) return cached.addresses;
+
+            try {
+                dnsLookups.increment();
+                List<InetAddress> addresses = delegate.lookup(hostname);
+                cache.put(hostname, new CachedLookup(addresses, now + ttlMs));
+                return addresses;
+            } catch (UnknownHostException e) {
+                if (cached != null && now - cached.expiresAt < maxStaleMs) return cached.addresses;
+                throw e;
+            }
+        }
+    }
+
+    private static class CachedLookup {
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        CachedLookup(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
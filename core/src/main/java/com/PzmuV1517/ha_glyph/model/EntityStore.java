@@ -0,0 +1,304 @@
+package com.PzmuV1517.ha_glyph.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Snapshot of a device list held in primitive columns instead of one object graph per
+ * entity: a byte id into an interned domain table, a byte id into an interned state table,
+ * and offsets into one shared char buffer holding each entity_id followed by its friendly
+ * name (empty when it is just the entity_id). Device class is not kept.
+ *
+ * Snapshots never change. {@link #append} returns a new snapshot that shares the columns
+ * when this one is the newest snapshot of its builder, so streaming a list in batches
+ * doesn't copy it per batch; older snapshots only ever read the rows they were built with.
+ * Appending is for one thread at a time; snapshots can be read from any thread.
+ */
+public final class EntityStore {
+    public static final EntityStore EMPTY = new Builder().build();
+
+    // Byte ids; the last value marks a domain or state that didn't fit the table
+    private static final int MAX_INTERNED = 255;
+    private static final int NOT_INTERNED = 255;
+
+    private final Builder owner;
+    private final int size;
+    private final String[] domains;
+    private final String[] states;
+    private final byte[] domainIds;
+    private final byte[] stateIds;
+    private final char[] chars;
+    private final int[] idStarts; // entity i: id in [idStarts[i], nameStarts[i]), name up to idStarts[i + 1]
+    private final int[] nameStarts;
+    private final int[] overflowRows; // sorted rows whose state is in overflowStates
+    private final String[] overflowStates;
+    private final int overflowCount;
+
+    private EntityStore(Builder owner) {
+        this.owner = owner;
+        size = owner.size;
+        domains = owner.domains;
+        states = owner.states;
+        domainIds = owner.domainIds;
+        stateIds = owner.stateIds;
+        chars = owner.chars;
+        idStarts = owner.idStarts;
+        nameStarts = owner.nameStarts;
+        overflowRows = owner.overflowRows;
+        overflowStates = owner.overflowStates;
+        overflowCount = owner.overflowCount;
+    }
+
+    public static EntityStore of(List<HomeAssistantEntity> entities) {
+        return EMPTY.append(entities);
+    }
+
+    /** This snapshot plus {@code entities}; entities without an entity_id are skipped. */
+    public EntityStore append(List<HomeAssistantEntity> entities) {
+        if (entities.isEmpty()) return this;
+        Builder builder = owner.size == size && this != EMPTY ? owner : new Builder(this);
+        for (HomeAssistantEntity entity : entities) {
+            builder.add(entity.getEntityId(), entity.getState(), entity.getFriendlyName());
+        }
+        return builder.build();
+    }
+
+    /** True if this snapshot is {@code other} with rows appended (or the same rows). */
+    public boolean startsWith(EntityStore other) {
+        return other.size == 0 || (other.owner == owner && other.size <= size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getEntityId(int row) {
+        return new String(chars, idStarts[row], nameStarts[row] - idStarts[row]);
+    }
+
+    /** Friendly name, or the entity_id if the entity has none. */
+    public String getFriendlyName(int row) {
+        int start = nameStarts[row];
+        int end = idStarts[row + 1];
+        return start == end ? getEntityId(row) : new String(chars, start, end - start);
+    }
+
+    public String getDomain(int row) {
+        int id = domainIds[row] & 0xFF;
+        if (id != NOT_INTERNED) return domains[id];
+        int start = idStarts[row];
+        for (int i = start; i < nameStarts[row]; i++) {
+            if (chars[i] == '.') return new String(chars, start, i - start);
+        }
+        return "";
+    }
+
+    public String getState(int row) {
+        int id = stateIds[row] & 0xFF;
+        if (id != NOT_INTERNED) return states[id];
+        return overflowStates[Arrays.binarySearch(overflowRows, 0, overflowCount, row)];
+    }
+
+    public boolean isOn(int row) {
+        return "on".equals(getState(row));
+    }
+
+    /** The row as an entity object, for code that hands single entities around. */
+    public HomeAssistantEntity get(int row) {
+        String entityId = getEntityId(row);
+        return new HomeAssistantEntity(entityId, getDomain(row), getState(row), getFriendlyName(row), null);
+    }
+
+    public boolean entityIdEquals(int row, String entityId) {
+        int start = idStarts[row];
+        int length = nameStarts[row] - start;
+        if (entityId == null || entityId.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != entityId.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** First row with this entity_id, or -1. */
+    public int indexOf(String entityId) {
+        for (int row = 0; row < size; row++) {
+            if (entityIdEquals(row, entityId)) return row;
+        }
+        return -1;
+    }
+
+    public boolean sameEntityId(int row, EntityStore other, int otherRow) {
+        return regionEquals(idStarts[row], nameStarts[row], other, other.idStarts[otherRow], other.nameStarts[otherRow]);
+    }
+
+    /** Same state and friendly name; what a device row displays besides the id. */
+    public boolean sameStateAndName(int row, EntityStore other, int otherRow) {
+        return getState(row).equals(other.getState(otherRow))
+                && regionEquals(nameStarts[row], idStarts[row + 1], other, other.nameStarts[otherRow], other.idStarts[otherRow + 1]);
+    }
+
+    private boolean regionEquals(int start, int end, EntityStore other, int otherStart, int otherEnd) {
+        if (end - start != otherEnd - otherStart) return false;
+        for (int i = 0; i < end - start; i++) {
+            if (chars[start + i] != other.chars[otherStart + i]) return false;
+        }
+        return true;
+    }
+
+    // Raw access for indexes built over the char buffer (see EntitySearchIndex)
+
+    /** Length of the char buffer used by this snapshot's rows. */
+    public int charCount() {
+        return idStarts[size];
+    }
+
+    public char charAt(int offset) {
+        return chars[offset];
+    }
+
+    public int idStart(int row) {
+        return idStarts[row];
+    }
+
+    public int idEnd(int row) {
+        return nameStarts[row];
+    }
+
+    /** Name region; empty when the friendly name is the entity_id. */
+    public int nameStart(int row) {
+        return nameStarts[row];
+    }
+
+    public int nameEnd(int row) {
+        return idStarts[row + 1];
+    }
+
+    /** Bytes in the column arrays, spare capacity included; the interned tables aren't counted. */
+    long columnBytes() {
+        return 2L * chars.length
+                + domainIds.length + stateIds.length
+                + 4L * (idStarts.length + nameStarts.length + overflowRows.length);
+    }
+
+    /**
+     * Writes the columns; only ever appends past the rows of snapshots it has built, so
+     * {@link #build()} can be called between adds.
+     */
+    public static final class Builder {
+        private final HashMap<String, Integer> domainLookup = new HashMap<>();
+        private final HashMap<String, Integer> stateLookup = new HashMap<>();
+        private String[] domains = new String[8];
+        private String[] states = new String[8];
+        private int domainCount;
+        private int stateCount;
+        private byte[] domainIds = new byte[16];
+        private byte[] stateIds = new byte[16];
+        private char[] chars = new char[256];
+        private int[] idStarts = new int[17];
+        private int[] nameStarts = new int[16];
+        private int[] overflowRows = new int[0];
+        private String[] overflowStates = new String[0];
+        private int overflowCount;
+        private int size;
+
+        public Builder() {
+        }
+
+        // Continues from a snapshot whose builder has moved past it
+        Builder(EntityStore from) {
+            size = from.size;
+            int capacity = Math.max(16, size * 2);
+            domainIds = Arrays.copyOf(from.domainIds, capacity);
+            stateIds = Arrays.copyOf(from.stateIds, capacity);
+            idStarts = Arrays.copyOf(from.idStarts, capacity + 1);
+            nameStarts = Arrays.copyOf(from.nameStarts, capacity);
+            chars = Arrays.copyOf(from.chars, Math.max(256, from.charCount() * 2));
+            overflowCount = from.overflowCount;
+            overflowRows = Arrays.copyOf(from.overflowRows, overflowCount);
+            overflowStates = Arrays.copyOf(from.overflowStates, overflowCount);
+            // Tables may hold entries added after this snapshot; only its ids are used
+            domains = from.domains.clone();
+            states = from.states.clone();
+            for (int i = 0; i < domains.length && domains[i] != null; i++) {
+                domainLookup.put(domains[i], i);
+                domainCount = i + 1;
+            }
+            for (int i = 0; i < states.length && states[i] != null; i++) {
+                stateLookup.put(states[i], i);
+                stateCount = i + 1;
+            }
+        }
+
+        /** Skips entities without an id; a null state is stored as "unknown". */
+        public Builder add(String entityId, String state, String friendlyName) {
+            if (entityId == null) return this;
+            if (state == null) state = "unknown";
+            String name = friendlyName == null || friendlyName.equals(entityId) ? "" : friendlyName;
+            ensureCapacity(size + 1, entityId.length() + name.length());
+
+            int dot = entityId.indexOf('.');
+            domainIds[size] = (byte) intern(dot > 0 ? entityId.substring(0, dot) : "", true);
+            int stateId = intern(state, false);
+            stateIds[size] = (byte) stateId;
+            if (stateId == NOT_INTERNED) addOverflowState(size, state);
+
+            int offset = idStarts[size];
+            entityId.getChars(0, entityId.length(), chars, offset);
+            offset += entityId.length();
+            nameStarts[size] = offset;
+            name.getChars(0, name.length(), chars, offset);
+            idStarts[size + 1] = offset + name.length();
+            size++;
+            return this;
+        }
+
+        public EntityStore build() {
+            return new EntityStore(this);
+        }
+
+        private int intern(String value, boolean domain) {
+            HashMap<String, Integer> lookup = domain ? domainLookup : stateLookup;
+            Integer id = lookup.get(value);
+            if (id != null) return id;
+            int count = domain ? domainCount : stateCount;
+            if (count == MAX_INTERNED) return NOT_INTERNED;
+
+            String[] table = domain ? domains : states;
+            if (count == table.length) {
+                // New array: older snapshots keep reading the one they were built with
+                table = Arrays.copyOf(table, Math.min(MAX_INTERNED, count * 2));
+                if (domain) domains = table; else states = table;
+            }
+            table[count] = value;
+            lookup.put(value, count);
+            if (domain) domainCount++; else stateCount++;
+            return count;
+        }
+
+        private void addOverflowState(int row, String state) {
+            if (overflowCount == overflowRows.length) {
+                int capacity = Math.max(8, overflowCount * 2);
+                overflowRows = Arrays.copyOf(overflowRows, capacity);
+                overflowStates = Arrays.copyOf(overflowStates, capacity);
+            }
+            overflowRows[overflowCount] = row;
+            overflowStates[overflowCount] = state;
+            overflowCount++;
+        }
+
+        private void ensureCapacity(int rows, int extraChars) {
+            if (rows > domainIds.length) {
+                int capacity = Math.max(rows, domainIds.length * 2);
+                domainIds = Arrays.copyOf(domainIds, capacity);
+                stateIds = Arrays.copyOf(stateIds, capacity);
+                nameStarts = Arrays.copyOf(nameStarts, capacity);
+                idStarts = Arrays.copyOf(idStarts, capacity + 1);
+            }
+            int needed = idStarts[size] + extraChars;
+            if (needed > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(needed, chars.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.PzmuV1517.ha_glyph.model;
+
+public class HomeAssistantEntity {
+    /** Domains the toy can switch on and off; the device list only shows these. */
+    public static final String[] CONTROLLABLE_DOMAINS = {"light", "switch", "fan", "input_boolean", "automation"};
+
+    private String entity_id;
+    private transient String domain;
+    private String state;
+    private Attributes attributes;
+
+    public static class Attributes {
+        private String friendly_name;
+        private String device_class;
+
+        public Attributes() {
+        }
+
+        public Attributes(String friendlyName, String deviceClass) {
+            this.friendly_name = friendlyName;
+            this.device_class = deviceClass;
+        }
+
+        public String getFriendlyName() {
+            return friendly_name;
+        }
+
+        public String getDeviceClass() {
+            return device_class;
+        }
+    }
+
+    public HomeAssistantEntity() {
+    }
+
+    public HomeAssistantEntity(String entityId, String state, String friendlyName, String deviceClass) {
+        this(entityId, null, state, friendlyName, deviceClass);
+    }
+
+    public HomeAssistantEntity(String entityId, String domain, String state, String friendlyName, String deviceClass) {
+        this.entity_id = entityId;
+        this.domain = domain;
+        this.state = state;
+        this.attributes = new Attributes(friendlyName, deviceClass);
+    }
+
+    public String getEntityId() {
+        return entity_id;
+    }
+
+    /** The part of the entity_id before the first '.', e.g. "light". */
+    public String getDomain() {
+        if (domain == null && entity_id != null) {
+            int dot = entity_id.indexOf('.');
+            domain = dot > 0 ? entity_id.substring(0, dot) : "";
+        }
+        return domain;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public Attributes getAttributes() {
+        return attributes;
+    }
+
+    public String getFriendlyName() {
+        return attributes != null && attributes.getFriendlyName() != null ? attributes.getFriendlyName() : entity_id;
+    }
+
+    public boolean isOn() {
+        return "on".equals(state);
+    }
+}
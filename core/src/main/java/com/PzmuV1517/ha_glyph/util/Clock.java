@@ -0,0 +1,11 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * Monotonic milliseconds, so timing policies can be driven by hand in tests. On Android
+ * pass SystemClock::uptimeMillis.
+ */
+public interface Clock {
+    Clock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+    long uptimeMillis();
+}
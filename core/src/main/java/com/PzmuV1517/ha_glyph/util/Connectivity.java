@@ -0,0 +1,22 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * What the device's current network can reach. The app implements it on
+ * ConnectivityManager; tests drive a fake.
+ */
+public interface Connectivity {
+    interface Listener {
+        void onConnectivityChanged();
+    }
+
+    /** A network with working internet access (Android's VALIDATED capability). */
+    boolean hasValidatedNetwork();
+
+    /** Connected over Wi-Fi or Ethernet, validated or not; where LAN-only servers live. */
+    boolean hasLocalNetwork();
+
+    /** Starts reporting changes to {@code listener}. */
+    void start(Listener listener);
+
+    void stop();
+}
@@ -0,0 +1,269 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Search over friendly names and entity ids of one {@link EntityStore} snapshot. The
+ * store's char buffer is lower-cased once into a copy with the same offsets, and every
+ * trigram points at the rows containing it, so a query only verifies the rows on its
+ * rarest trigram instead of scanning the whole list.
+ *
+ * Matches are the same as a plain substring search; they are ranked exact match first
+ * (whole name, entity id or the id after the '.'), then word prefix, then anything else,
+ * keeping list order within a rank. Results are rows of the store, not entity copies.
+ */
+public class EntitySearchIndex {
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_CONTAINS = 2;
+    private static final int CANCEL_CHECK_INTERVAL = 256;
+    private static final long EMPTY = -1L;
+
+    private final EntityStore store;
+    private final char[] keys;
+    // Per row: name start/end, then id start/end in keys, trimmed
+    private final int[] bounds;
+
+    // Open-addressed trigram -> [offsets[slot], offsets[slot] + counts[slot]) in postings
+    private long[] trigrams;
+    private int[] counts;
+    private int[] offsets;
+    private int[] postings;
+    private int trigramCount;
+
+    public EntitySearchIndex(EntityStore store) {
+        this.store = store;
+        int size = store.size();
+        keys = new char[store.charCount()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Character.toLowerCase(store.charAt(i));
+        }
+        bounds = new int[size * 4];
+        for (int row = 0; row < size; row++) {
+            boolean hasName = store.nameEnd(row) > store.nameStart(row);
+            // No friendly name means the name is the entity_id
+            setBounds(row * 4, hasName ? store.nameStart(row) : store.idStart(row), hasName ? store.nameEnd(row) : store.idEnd(row));
+            setBounds(row * 4 + 2, store.idStart(row), store.idEnd(row));
+        }
+        buildTrigrams();
+    }
+
+    private void setBounds(int at, int start, int end) {
+        while (start < end && keys[start] <= ' ') start++;
+        while (end > start && keys[end - 1] <= ' ') end--;
+        bounds[at] = start;
+        bounds[at + 1] = end;
+    }
+
+    public EntityStore getStore() {
+        return store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /** Trimmed and lower-cased the way keys are; null becomes "". */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String trimmed = text.trim();
+        char[] chars = new char[trimmed.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(trimmed.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    public int[] search(String query) {
+        return search(query, null);
+    }
+
+    /**
+     * Returns matching rows in rank order, or null if {@code cancelled} turned true while
+     * searching. A blank query matches every row.
+     */
+    public int[] search(String query, BooleanSupplier cancelled) {
+        String q = normalize(query);
+        int size = store.size();
+        if (q.isEmpty()) {
+            int[] all = new int[size];
+            for (int row = 0; row < size; row++) all[row] = row;
+            return all;
+        }
+
+        int[] candidates;
+        int from;
+        int to;
+        if (q.length() < 3) {
+            candidates = null;
+            from = 0;
+            to = size;
+        } else {
+            int best = -1;
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                int slot = find(trigram(q, i));
+                if (slot < 0) return new int[0];
+                if (best < 0 || counts[slot] < counts[best]) best = slot;
+            }
+            candidates = postings;
+            from = offsets[best];
+            to = from + counts[best];
+        }
+
+        int[] ranked = new int[to - from];
+        int[] ranks = new int[to - from];
+        int found = 0;
+        for (int c = from; c < to; c++) {
+            if (cancelled != null && (c - from) % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            int row = candidates != null ? candidates[c] : c;
+            int rank = Math.min(rank(bounds[row * 4], bounds[row * 4 + 1], q), rank(bounds[row * 4 + 2], bounds[row * 4 + 3], q));
+            if (rank <= RANK_CONTAINS) {
+                ranked[found] = row;
+                ranks[found++] = rank;
+            }
+        }
+
+        int[] results = new int[found];
+        int next = 0;
+        for (int rank = RANK_EXACT; rank <= RANK_CONTAINS; rank++) {
+            for (int i = 0; i < found; i++) {
+                if (ranks[i] == rank) results[next++] = ranked[i];
+            }
+        }
+        return results;
+    }
+
+    // RANK_* of the best occurrence of q in keys[start, end), or Integer.MAX_VALUE if there is none
+    private int rank(int start, int end, String q) {
+        int best = Integer.MAX_VALUE;
+        for (int at = indexOf(start, end, q, start); at >= 0; at = indexOf(start, end, q, at + 1)) {
+            char before = at == start ? ' ' : keys[at - 1];
+            if (at == start || before == ' ' || before == '_' || before == '.' || before == '-') {
+                if ((at == start || before == '.') && at + q.length() == end) return RANK_EXACT;
+                best = RANK_PREFIX;
+            } else if (best > RANK_CONTAINS) {
+                best = RANK_CONTAINS;
+            }
+        }
+        return best;
+    }
+
+    private int indexOf(int start, int end, String q, int from) {
+        char first = q.charAt(0);
+        for (int at = from; at + q.length() <= end; at++) {
+            if (keys[at] != first) continue;
+            int i = 1;
+            while (i < q.length() && keys[at + i] == q.charAt(i)) i++;
+            if (i == q.length()) return at;
+        }
+        return -1;
+    }
+
+    private void buildTrigrams() {
+        int capacity = 1024;
+        trigrams = new long[capacity];
+        Arrays.fill(trigrams, EMPTY);
+        counts = new int[capacity];
+        int[] last = new int[capacity];
+
+        // Pass 1: count entities per trigram (once per entity)
+        for (int e = 0; e < store.size(); e++) {
+            for (int k = 0; k < 2; k++) {
+                int end = bounds[e * 4 + k * 2 + 1];
+                for (int i = bounds[e * 4 + k * 2]; i + 3 <= end; i++) {
+                    if (trigramCount * 2 >= trigrams.length) last = grow(last);
+                    int slot = findOrInsert(trigram(keys, i), last);
+                    if (last[slot] != e) {
+                        last[slot] = e;
+                        counts[slot]++;
+                    }
+                }
+            }
+        }
+
+        offsets = new int[trigrams.length];
+        int total = 0;
+        for (int slot = 0; slot < trigrams.length; slot++) {
+            offsets[slot] = total;
+            total += counts[slot];
+        }
+
+        // Pass 2: fill postings in entity order
+        postings = new int[total];
+        int[] filled = new int[trigrams.length];
+        Arrays.fill(last, -1);
+        for (int e = 0; e < store.size(); e++) {
+            for (int k = 0; k < 2; k++) {
+                int end = bounds[e * 4 + k * 2 + 1];
+                for (int i = bounds[e * 4 + k * 2]; i + 3 <= end; i++) {
+                    int slot = find(trigram(keys, i));
+                    if (last[slot] != e) {
+                        last[slot] = e;
+                        postings[offsets[slot] + filled[slot]++] = e;
+                    }
+                }
+            }
+        }
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long trigram(char[] s, int i) {
+        return ((long) s[i] << 32) | ((long) s[i + 1] << 16) | s[i + 2];
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & mask;
+    }
+
+    private int find(long key) {
+        int mask = trigrams.length - 1;
+        for (int slot = hash(key, mask); ; slot = (slot + 1) & mask) {
+            if (trigrams[slot] == key) return slot;
+            if (trigrams[slot] == EMPTY) return -1;
+        }
+    }
+
+    private int findOrInsert(long key, int[] last) {
+        int mask = trigrams.length - 1;
+        for (int slot = hash(key, mask); ; slot = (slot + 1) & mask) {
+            if (trigrams[slot] == key) return slot;
+            if (trigrams[slot] == EMPTY) {
+                trigrams[slot] = key;
+                counts[slot] = 0;
+                last[slot] = -1;
+                trigramCount++;
+                return slot;
+            }
+        }
+    }
+
+    // Doubles the table during pass 1, carrying counts and last-seen entities along
+    private int[] grow(int[] last) {
+        long[] oldTrigrams = trigrams;
+        int[] oldCounts = counts;
+        int capacity = oldTrigrams.length * 2;
+        trigrams = new long[capacity];
+        Arrays.fill(trigrams, EMPTY);
+        counts = new int[capacity];
+        int[] grownLast = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldTrigrams.length; i++) {
+            if (oldTrigrams[i] == EMPTY) continue;
+            int slot = hash(oldTrigrams[i], mask);
+            while (trigrams[slot] != EMPTY) slot = (slot + 1) & mask;
+            trigrams[slot] = oldTrigrams[i];
+            counts[slot] = oldCounts[i];
+            grownLast[slot] = last[i];
+        }
+        return grownLast;
+    }
+}
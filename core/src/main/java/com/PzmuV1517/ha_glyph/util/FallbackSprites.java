@@ -0,0 +1,52 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.util.Arrays;
+
+/**
+ * Sprites drawn in code for when the bundled JSON can't be loaded. They replace the old
+ * Canvas drawings at the levels the Glyph SDK derived from their colors: the SDK averages
+ * R, G and B, so green and red came out at 85 and gray at 136.
+ */
+public final class FallbackSprites {
+    private static final int SIZE = GlyphCompositor.SIZE;
+    private static final int GREEN = 85;
+    private static final int GRAY = 136;
+    private static final int RED = 85;
+
+    private FallbackSprites() {
+    }
+
+    /** Filled circle of radius 10. */
+    public static SpriteData on() {
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                int dx = col - SIZE / 2;
+                int dy = row - SIZE / 2;
+                if (dx * dx + dy * dy <= 100) pixels[row * SIZE + col] = (byte) GREEN;
+            }
+        }
+        return still(pixels);
+    }
+
+    /** An X from (5, 5) to (20, 20). */
+    public static SpriteData off() {
+        byte[] pixels = new byte[SIZE * SIZE];
+        for (int i = 5; i <= 20; i++) {
+            pixels[i * SIZE + i] = (byte) GRAY;
+            pixels[i * SIZE + (SIZE - 1 - i)] = (byte) GRAY;
+        }
+        return still(pixels);
+    }
+
+    /** Every pixel lit. */
+    public static SpriteData error() {
+        byte[] pixels = new byte[SIZE * SIZE];
+        Arrays.fill(pixels, (byte) RED);
+        return still(pixels);
+    }
+
+    private static SpriteData still(byte[] pixels) {
+        return new SpriteData(SIZE, SIZE, SpriteData.fullShape(SIZE, SIZE), new int[]{0}, pixels);
+    }
+}
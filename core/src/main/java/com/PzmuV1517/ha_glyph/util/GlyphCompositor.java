@@ -0,0 +1,101 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * Builds Glyph Matrix frames straight from sprite brightness, without the Bitmap and
+ * GlyphMatrixObject/GlyphMatrixFrame round trip. Layers are drawn bottom to top and, like
+ * GlyphMatrixFrame, the topmost lit pixel wins. Levels are computed with the SDK's integer
+ * steps (0..2047, scaled by a 0..255 layer brightness), so a single layer gives the same
+ * buffer GlyphMatrixFrame.render produces for the sprite at scale 100.
+ *
+ * Only pixels inside the shape mask are written; the rest of the output stays 0. Composing
+ * allocates nothing; one instance is for one thread.
+ */
+public final class GlyphCompositor {
+    public static final int SIZE = 25;
+    public static final int PIXELS = SIZE * SIZE;
+    public static final int MAX_LEVEL = 2047;
+    public static final int MAX_LAYERS = 4;
+    /** Row widths of the round matrix; the same mask the bundled sprites carry. */
+    public static final int[] MATRIX_SHAPE = {7, 11, 15, 17, 19, 21, 21, 23, 23, 25, 25, 25, 25,
+            25, 25, 25, 23, 23, 21, 21, 19, 17, 15, 11, 7};
+
+    private final int[] rowStarts = new int[SIZE];
+    private final int[] rowEnds = new int[SIZE];
+    private final SpriteData[] sprites = new SpriteData[MAX_LAYERS];
+    private final int[] frames = new int[MAX_LAYERS];
+    private final int[] brightnesses = new int[MAX_LAYERS];
+    private int layerCount = 0;
+
+    public GlyphCompositor() {
+        this(MATRIX_SHAPE);
+    }
+
+    /** @param shape lit pixels per row, centered; usually the "shape" of a sprite JSON */
+    public GlyphCompositor(int[] shape) {
+        if (shape.length != SIZE) {
+            throw new IllegalArgumentException("Shape has " + shape.length + " rows, expected " + SIZE);
+        }
+        for (int row = 0; row < SIZE; row++) {
+            if (shape[row] < 0 || shape[row] > SIZE) {
+                throw new IllegalArgumentException("Shape row " + row + " is " + shape[row] + " wide");
+            }
+            rowStarts[row] = (SIZE - shape[row]) / 2;
+            rowEnds[row] = rowStarts[row] + shape[row];
+        }
+    }
+
+    /** Removes every layer. */
+    public GlyphCompositor clear() {
+        for (int i = 0; i < layerCount; i++) {
+            sprites[i] = null;
+        }
+        layerCount = 0;
+        return this;
+    }
+
+    /** Adds a layer above the existing ones; brightness is 0..255 like GlyphMatrixObject's. */
+    public GlyphCompositor addLayer(SpriteData sprite, int frame, int brightness) {
+        if (layerCount == MAX_LAYERS) throw new IllegalStateException("At most " + MAX_LAYERS + " layers");
+        if (frame < 0 || frame >= sprite.getFrameCount()) {
+            throw new IndexOutOfBoundsException("Frame " + frame + " of " + sprite.getFrameCount());
+        }
+        sprites[layerCount] = sprite;
+        frames[layerCount] = frame;
+        brightnesses[layerCount] = Math.max(0, Math.min(255, brightness));
+        layerCount++;
+        return this;
+    }
+
+    /** Writes the composed frame into {@code out} ({@link #PIXELS} entries) and returns it. */
+    public int[] compose(int[] out) {
+        if (out.length != PIXELS) throw new IllegalArgumentException("Output needs " + PIXELS + " entries");
+        for (int row = 0; row < SIZE; row++) {
+            int rowOffset = row * SIZE;
+            int start = rowStarts[row];
+            int end = rowEnds[row];
+            for (int col = rowOffset; col < rowOffset + start; col++) out[col] = 0;
+            for (int col = start; col < end; col++) {
+                out[rowOffset + col] = levelAt(row, col);
+            }
+            for (int col = rowOffset + end; col < rowOffset + SIZE; col++) out[col] = 0;
+        }
+        return out;
+    }
+
+    private int levelAt(int row, int col) {
+        for (int layer = layerCount - 1; layer >= 0; layer--) {
+            SpriteData sprite = sprites[layer];
+            // Nearest sample, rounded the way the SDK maps a bitmap onto the 25x25 grid
+            int srcRow = (row * (sprite.getHeight() - 1) * 2 + SIZE - 1) / ((SIZE - 1) * 2);
+            int srcCol = (col * (sprite.getWidth() - 1) * 2 + SIZE - 1) / ((SIZE - 1) * 2);
+            int level = level(sprite.getBrightness(frames[layer], srcRow, srcCol), brightnesses[layer]);
+            if (level != 0) return level;
+        }
+        return 0;
+    }
+
+    /** The SDK's conversion of a pixel's 0..255 luminance at a 0..255 brightness. */
+    static int level(int luminance, int brightness) {
+        return luminance * MAX_LEVEL / 255 * brightness / 255;
+    }
+}
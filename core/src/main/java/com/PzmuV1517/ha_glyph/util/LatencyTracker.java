@@ -0,0 +1,54 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.util.Arrays;
+
+/**
+ * The last few latencies of one kind of request, for delays that should follow what the
+ * server actually does, such as when to hedge. Keeps a ring of the most recent samples, so
+ * an old spike ages out. Unlike a {@link Metrics.Histogram} it answers percentiles exactly.
+ *
+ * Thread-safe.
+ */
+public final class LatencyTracker {
+    /** Percentile asked for with too few samples to say. */
+    public static final long UNKNOWN = -1;
+
+    private final long[] samples;
+    private final int minSamples;
+    private int count;
+    private int next;
+
+    /** Keeps {@code capacity} samples; percentiles need at least {@code minSamples} of them. */
+    public LatencyTracker(int capacity, int minSamples) {
+        if (capacity <= 0 || minSamples <= 0 || minSamples > capacity) {
+            throw new IllegalArgumentException("Need 0 < minSamples <= capacity");
+        }
+        this.samples = new long[capacity];
+        this.minSamples = minSamples;
+    }
+
+    public synchronized void record(long latencyMs) {
+        samples[next] = Math.max(0, latencyMs);
+        next = (next + 1) % samples.length;
+        if (count < samples.length) count++;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /** Nearest-rank percentile (0 < p <= 1) of the kept samples in ms, or {@link #UNKNOWN}. */
+    public synchronized long percentile(double p) {
+        if (p <= 0 || p > 1) throw new IllegalArgumentException("Percentile must be within (0, 1]");
+        if (count < minSamples) return UNKNOWN;
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p * count);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        next = 0;
+    }
+}
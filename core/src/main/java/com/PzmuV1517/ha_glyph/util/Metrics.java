@@ -0,0 +1,161 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters and fixed-bucket histograms. Look metrics up once and keep the
+ * reference; recording is a few atomic adds with no allocation or formatting, so it is
+ * safe on the frame and network paths. Text is only produced by {@link #dump}.
+ */
+public final class Metrics {
+    /** Bucket upper bounds for request latencies, in ms. */
+    public static final long[] LATENCY_MS_BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    /** Bucket upper bounds for render times, in microseconds. */
+    public static final long[] RENDER_US_BUCKETS = {50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000};
+    /** Bucket upper bounds for small counts such as error streak lengths. */
+    public static final long[] COUNT_BUCKETS = {1, 2, 3, 5, 10, 20, 50, 100};
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    Metrics() {
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) return counter;
+        counters.putIfAbsent(name, new Counter());
+        return counters.get(name);
+    }
+
+    public Histogram histogram(String name, long[] bucketBounds) {
+        Histogram histogram = histograms.get(name);
+        if (histogram != null) return histogram;
+        histograms.putIfAbsent(name, new Histogram(bucketBounds));
+        return histograms.get(name);
+    }
+
+    /** Writes every metric, sorted by name: counters as values, histograms as count/p50/p99/max. */
+    public void dump(PrintWriter writer) {
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            writer.println(entry.getKey() + " = " + entry.getValue().get());
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = entry.getValue();
+            writer.println(entry.getKey() + " count=" + h.getCount()
+                    + " p50<=" + bound(h.percentile(0.50))
+                    + " p99<=" + bound(h.percentile(0.99))
+                    + " max=" + h.getMax()
+                    + " mean=" + (h.getCount() == 0 ? 0 : h.getSum() / h.getCount()));
+        }
+    }
+
+    private static String bound(long value) {
+        return value == Long.MAX_VALUE ? "inf" : Long.toString(value);
+    }
+
+    /** Clears every value; registered metrics stay valid. */
+    public void reset() {
+        for (Counter counter : counters.values()) counter.value.set(0);
+        for (Histogram histogram : histograms.values()) histogram.reset();
+    }
+
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /** Counts values into buckets by upper bound; the last bucket takes everything larger. */
+    public static final class Histogram {
+        private final long[] bounds;
+        private final AtomicLongArray buckets;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        Histogram(long[] bounds) {
+            this.bounds = bounds.clone();
+            this.buckets = new AtomicLongArray(bounds.length + 1);
+        }
+
+        public void record(long value) {
+            int lo = 0;
+            int hi = bounds.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (value <= bounds[mid]) hi = mid; else lo = mid + 1;
+            }
+            buckets.incrementAndGet(lo);
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long previous = max.get();
+            while (value > previous && !max.compareAndSet(previous, value)) {
+                previous = max.get();
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getSum() {
+            return sum.get();
+        }
+
+        public long getMax() {
+            return count.get() == 0 ? 0 : max.get();
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0..1), Long.MAX_VALUE if that
+         * is the overflow bucket, 0 if nothing was recorded.
+         */
+        public long percentile(double quantile) {
+            long total = 0;
+            long[] snapshot = new long[buckets.length()];
+            for (int i = 0; i < snapshot.length; i++) {
+                snapshot[i] = buckets.get(i);
+                total += snapshot[i];
+            }
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && snapshot[i] > 0) {
+                    return i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(Long.MIN_VALUE);
+        }
+    }
+}
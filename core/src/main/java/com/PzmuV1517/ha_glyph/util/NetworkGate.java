@@ -0,0 +1,155 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tells the toy whether its Home Assistant server is worth trying on the current network,
+ * and reports the moments that changes. A server only on LAN-only addresses (private IP,
+ * .local, a bare host name) needs Wi-Fi or Ethernet, which may well lack internet access;
+ * a server with any other base URL needs a validated network.
+ *
+ * Not thread-safe; the connectivity listener must run on the caller's thread.
+ */
+public final class NetworkGate {
+    public interface Listener {
+        /** The server can't be reached any more; stop sending requests. */
+        void onSuspend();
+
+        /** The server looks reachable again; fetch right away. */
+        void onResume();
+
+        /** Still reachable, but the device moved between a local network and another one. */
+        default void onNetworkChanged() {
+        }
+    }
+
+    private final Connectivity connectivity;
+    private final Listener listener;
+    private boolean localOnly;
+    private boolean reachable = true;
+    private boolean onLocalNetwork;
+    private boolean started = false;
+
+    public NetworkGate(Connectivity connectivity, Listener listener) {
+        this.connectivity = connectivity;
+        this.listener = listener;
+    }
+
+    public void start(List<String> serverUrls) {
+        localOnly = isLocalOnly(serverUrls);
+        onLocalNetwork = connectivity.hasLocalNetwork();
+        reachable = canReach();
+        if (!started) {
+            started = true;
+            connectivity.start(this::update);
+        }
+    }
+
+    public void stop() {
+        if (!started) return;
+        started = false;
+        connectivity.stop();
+    }
+
+    /** The server's base URLs; call when the configuration changes. */
+    public void setServerUrls(List<String> serverUrls) {
+        localOnly = isLocalOnly(serverUrls);
+        update();
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public boolean isLocalOnly() {
+        return localOnly;
+    }
+
+    /** On Wi-Fi or Ethernet, where LAN-only URLs can work. */
+    public boolean isOnLocalNetwork() {
+        return onLocalNetwork;
+    }
+
+    private void update() {
+        boolean local = connectivity.hasLocalNetwork();
+        boolean localChanged = local != onLocalNetwork;
+        onLocalNetwork = local;
+        boolean now = canReach();
+        if (now != reachable) {
+            reachable = now;
+            if (now) {
+                listener.onResume();
+            } else {
+                listener.onSuspend();
+            }
+        } else if (now && localChanged) {
+            listener.onNetworkChanged();
+        }
+    }
+
+    private boolean canReach() {
+        return localOnly ? connectivity.hasLocalNetwork() : connectivity.hasValidatedNetwork();
+    }
+
+    /** True if there is at least one URL and all of them are LAN-only. */
+    public static boolean isLocalOnly(List<String> urls) {
+        if (urls == null || urls.isEmpty()) return false;
+        for (String url : urls) {
+            if (!isLocalOnly(url)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * True for URLs that only resolve or route inside a home network: .local/.lan/.home.arpa
+     * names, single-label host names, and private, link-local or loopback addresses.
+     */
+    public static boolean isLocalOnly(String url) {
+        if (url == null) return false;
+        String host;
+        try {
+            host = URI.create(url.trim()).getHost();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (host == null || host.isEmpty()) return false;
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.startsWith("[")) {
+            return isLocalIpv6(host.substring(1, host.length() - 1));
+        }
+        if (host.endsWith(".local") || host.endsWith(".lan") || host.endsWith(".home.arpa")
+                || host.equals("localhost") || host.indexOf('.') < 0) {
+            return true;
+        }
+        int[] ip = parseIpv4(host);
+        if (ip == null) return false;
+        return ip[0] == 10
+                || ip[0] == 127
+                || (ip[0] == 172 && ip[1] >= 16 && ip[1] <= 31)
+                || (ip[0] == 192 && ip[1] == 168)
+                || (ip[0] == 169 && ip[1] == 254);
+    }
+
+    private static boolean isLocalIpv6(String host) {
+        return host.equals("::1")
+                || host.startsWith("fe8") || host.startsWith("fe9") || host.startsWith("fea") || host.startsWith("feb")
+                || host.startsWith("fc") || host.startsWith("fd");
+    }
+
+    private static int[] parseIpv4(String host) {
+        String[] parts = host.split("\\.", -1);
+        if (parts.length != 4) return null;
+        int[] ip = new int[4];
+        for (int i = 0; i < 4; i++) {
+            if (parts[i].isEmpty() || parts[i].length() > 3) return null;
+            for (int c = 0; c < parts[i].length(); c++) {
+                if (!Character.isDigit(parts[i].charAt(c))) return null;
+            }
+            ip[i] = Integer.parseInt(parts[i]);
+            if (ip[i] > 255) return null;
+        }
+        return ip;
+    }
+}
@@ -0,0 +1,105 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * Tracks what the glyph should show around a toggle press: the predicted state right away,
+ * the server's state once it agrees, and a rollback if the call fails or the server still
+ * disagrees after the confirm window. Presses are sent as explicit turn_on/turn_off targets
+ * and at most one call is in flight; presses made meanwhile collapse into a single
+ * follow-up call for the newest target. Not thread-safe; use from one thread.
+ */
+public class OptimisticToggle {
+    /** Server state didn't change anything on screen. */
+    public static final int RESULT_UNCHANGED = 0;
+    /** No toggle pending; the displayed state followed the server. */
+    public static final int RESULT_UPDATED = 1;
+    /** The server reached the predicted state. */
+    public static final int RESULT_CONFIRMED = 2;
+    /** Contradicting state inside the confirm window, possibly from before the call; ignored. */
+    public static final int RESULT_IGNORED = 3;
+    /** The server disagreed after the confirm window; the prediction was dropped. */
+    public static final int RESULT_ROLLED_BACK = 4;
+
+    private boolean confirmedOn;
+    private boolean pending;
+    private boolean desiredOn;
+    private boolean inFlight;
+    private boolean sentOn;
+    private boolean confirmExpired;
+
+    private final Metrics.Counter presses = Metrics.get().counter("toggle.presses");
+    private final Metrics.Counter coalescedPresses = Metrics.get().counter("toggle.coalesced");
+    private final Metrics.Counter rollbacks = Metrics.get().counter("toggle.rollbacks");
+
+    public boolean isDisplayedOn() {
+        return pending ? desiredOn : confirmedOn;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    /**
+     * Flips the displayed state. Returns the target to send now, or null if a call is already
+     * in flight (the newest target is sent when it returns, see {@link #onCallSucceeded()}).
+     */
+    public Boolean press() {
+        presses.increment();
+        desiredOn = !isDisplayedOn();
+        pending = true;
+        confirmExpired = false;
+        if (inFlight) {
+            coalescedPresses.increment();
+            return null;
+        }
+        inFlight = true;
+        sentOn = desiredOn;
+        return sentOn;
+    }
+
+    /** Returns the next target to send if presses changed it meanwhile, else null. */
+    public Boolean onCallSucceeded() {
+        inFlight = false;
+        if (pending && desiredOn != sentOn) {
+            inFlight = true;
+            sentOn = desiredOn;
+            return sentOn;
+        }
+        return null;
+    }
+
+    /** Drops the prediction; the confirmed state is displayed again. */
+    public void onCallFailed() {
+        inFlight = false;
+        if (pending) {
+            pending = false;
+            rollbacks.increment();
+        }
+    }
+
+    /** Starts accepting contradicting server states as final. */
+    public void onConfirmTimeout() {
+        if (pending && !inFlight) {
+            confirmExpired = true;
+        }
+    }
+
+    public int onServerState(boolean on) {
+        if (!pending) {
+            boolean changed = on != confirmedOn;
+            confirmedOn = on;
+            return changed ? RESULT_UPDATED : RESULT_UNCHANGED;
+        }
+        if (on == desiredOn && !inFlight) {
+            confirmedOn = on;
+            pending = false;
+            return RESULT_CONFIRMED;
+        }
+        if (!confirmExpired) {
+            return RESULT_IGNORED;
+        }
+        confirmedOn = on;
+        pending = false;
+        rollbacks.increment();
+        return RESULT_ROLLED_BACK;
+    }
+}
@@ -0,0 +1,64 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reader for the packed sprite assets produced by the app's compileSprites Gradle task.
+ *
+ * Layout (big-endian): magic "HAGS", u8 version, u8 width, u8 height, u16 frame count,
+ * height x u8 shape row widths, then per frame a u16 duration in ms followed by one
+ * brightness byte for every pixel inside the shape mask, row by row.
+ */
+public final class PackedSprite {
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = {'H', 'A', 'G', 'S'};
+    private static final int HEADER_SIZE = 9;
+
+    private PackedSprite() {
+    }
+
+    public static SpriteData read(InputStream in) throws IOException {
+        return decode(in.readAllBytes());
+    }
+
+    public static SpriteData decode(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE) throw new IOException("Packed sprite truncated");
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) throw new IOException("Not a packed sprite");
+        }
+        int version = data[4] & 0xFF;
+        if (version != VERSION) throw new IOException("Unsupported packed sprite version " + version);
+
+        int width = data[5] & 0xFF;
+        int height = data[6] & 0xFF;
+        int frameCount = ((data[7] & 0xFF) << 8) | (data[8] & 0xFF);
+        if (width == 0 || height == 0 || frameCount == 0) throw new IOException("Empty packed sprite");
+        if (data.length < HEADER_SIZE + height) throw new IOException("Packed sprite truncated");
+
+        int pos = HEADER_SIZE;
+        int[] shape = new int[height];
+        int activePixels = 0;
+        for (int row = 0; row < height; row++) {
+            shape[row] = data[pos++] & 0xFF;
+            if (shape[row] > width) throw new IOException("Shape row " + row + " wider than sprite");
+            activePixels += shape[row];
+        }
+        if (data.length != pos + frameCount * (2 + activePixels)) throw new IOException("Packed sprite size mismatch");
+
+        int[] durations = new int[frameCount];
+        byte[][] frames = new byte[frameCount][];
+        for (int frame = 0; frame < frameCount; frame++) {
+            durations[frame] = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+            pos += 2;
+            byte[] pixels = new byte[width * height];
+            for (int row = 0; row < height; row++) {
+                int start = row * width + (width - shape[row]) / 2;
+                System.arraycopy(data, pos, pixels, start, shape[row]);
+                pos += shape[row];
+            }
+            frames[frame] = pixels;
+        }
+        return new SpriteData(width, height, shape, durations, frames);
+    }
+}
@@ -0,0 +1,94 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * Decides when the toy polls Home Assistant over REST. Polls come fast for a short window
+ * after activity (a toggle, a state change, the toy being shown) and then back off,
+ * doubling each window up to an idle interval. There is no timer at all while the toy is
+ * not shown, the WebSocket feed is live or the network can't reach the server, and in AOD
+ * the policy leaves polling to the GlyphToy AOD ticks instead of running its own timer.
+ *
+ * Holds no timer itself: the caller asks {@link #nextPollDelayMs()} after every poll and
+ * every change reported here. Not thread-safe; use it from the caller's handler thread.
+ */
+public final class PollPolicy {
+    public static final long NO_TIMER = -1;
+    public static final long FAST_INTERVAL_MS = 2000;
+    public static final long FAST_WINDOW_MS = 30_000;
+    public static final long IDLE_INTERVAL_MS = 60_000;
+    private static final int MAX_BACKOFF_STEPS = 30;
+
+    private final Clock clock;
+    private final long fastIntervalMs;
+    private final long fastWindowMs;
+    private final long idleIntervalMs;
+
+    private boolean visible = false;
+    private boolean aod = false;
+    private boolean pushActive = false;
+    private boolean networkAvailable = true;
+    private long lastActivity;
+    private long lastPoll;
+    private boolean polled = false;
+
+    public PollPolicy(Clock clock) {
+        this(clock, FAST_INTERVAL_MS, FAST_WINDOW_MS, IDLE_INTERVAL_MS);
+    }
+
+    public PollPolicy(Clock clock, long fastIntervalMs, long fastWindowMs, long idleIntervalMs) {
+        if (fastIntervalMs <= 0 || fastWindowMs <= 0 || idleIntervalMs < fastIntervalMs) {
+            throw new IllegalArgumentException("Need 0 < fast interval <= idle interval and a positive window");
+        }
+        this.clock = clock;
+        this.fastIntervalMs = fastIntervalMs;
+        this.fastWindowMs = fastWindowMs;
+        this.idleIntervalMs = idleIntervalMs;
+        lastActivity = clock.uptimeMillis();
+    }
+
+    /** The toy is on the matrix (bound). Showing it counts as activity. */
+    public void setVisible(boolean visible) {
+        if (visible && !this.visible) onActivity();
+        this.visible = visible;
+    }
+
+    public void setAod(boolean aod) {
+        this.aod = aod;
+    }
+
+    /** The WebSocket feed delivers state changes, so polling would only repeat them. */
+    public void setPushActive(boolean pushActive) {
+        this.pushActive = pushActive;
+    }
+
+    /** Whether the current network can reach the server at all (see NetworkGate). */
+    public void setNetworkAvailable(boolean networkAvailable) {
+        this.networkAvailable = networkAvailable;
+    }
+
+    /** A toggle or a state change: poll fast again for a while. */
+    public void onActivity() {
+        lastActivity = clock.uptimeMillis();
+    }
+
+    public void onPolled() {
+        lastPoll = clock.uptimeMillis();
+        polled = true;
+    }
+
+    /** Delay until the next timed poll, 0 if one is due now, or {@link #NO_TIMER}. */
+    public long nextPollDelayMs() {
+        if (!visible || aod || pushActive || !networkAvailable) return NO_TIMER;
+        if (!polled) return 0;
+        long due = lastPoll + currentIntervalMs();
+        return Math.max(0, due - clock.uptimeMillis());
+    }
+
+    /** Polling interval right now: fast within the window after activity, then doubling up to idle. */
+    public long currentIntervalMs() {
+        long quiet = clock.uptimeMillis() - lastActivity;
+        if (quiet < fastWindowMs) return fastIntervalMs;
+        long steps = Math.min(MAX_BACKOFF_STEPS, (quiet - fastWindowMs) / fastWindowMs + 1);
+        long interval = fastIntervalMs << steps;
+        return Math.min(idleIntervalMs, interval);
+    }
+}
@@ -0,0 +1,44 @@
+package com.PzmuV1517.ha_glyph.util;
+
+/**
+ * A sprite's frames pre-rendered into final matrix buffers, with the duration of each frame.
+ * Single-frame animations are just a still image.
+ */
+public class SpriteAnimation {
+    // Frames with no (or a silly) duration still get one display refresh
+    private static final int MIN_FRAME_DURATION_MS = 16;
+
+    private final int[][] frames;
+    private final int[] durations;
+
+    public SpriteAnimation(int[][] frames, int[] durations) {
+        if (frames.length == 0 || frames.length != durations.length) {
+            throw new IllegalArgumentException("Animation needs one duration per frame");
+        }
+        this.frames = frames;
+        this.durations = new int[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            this.durations[i] = Math.max(MIN_FRAME_DURATION_MS, durations[i]);
+        }
+    }
+
+    public static SpriteAnimation still(int[] frame) {
+        return new SpriteAnimation(new int[][]{frame}, new int[]{0});
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    public boolean isAnimated() {
+        return frames.length > 1;
+    }
+
+    public int[] getFrame(int index) {
+        return frames[index];
+    }
+
+    public int getDuration(int index) {
+        return durations[index];
+    }
+}
@@ -0,0 +1,111 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import java.util.Arrays;
+
+/**
+ * Decoded sprite: dimensions, the per-row "shape" mask and an 8-bit brightness for every
+ * pixel of every frame. Each frame is its own row-major array, so decoders can fill frames
+ * as they go without knowing the frame count up front.
+ */
+public class SpriteData {
+    private final int width;
+    private final int height;
+    private final int[] shape;
+    private final int[] durations;
+    private final byte[][] frames;
+
+    /** {@code pixels} holds every frame back to back. */
+    public SpriteData(int width, int height, int[] shape, int[] durations, byte[] pixels) {
+        this(width, height, shape, durations, split(pixels, width * height, durations.length));
+    }
+
+    /** {@code frames} holds width * height brightness bytes per frame; the arrays are kept, not copied. */
+    public SpriteData(int width, int height, int[] shape, int[] durations, byte[][] frames) {
+        if (frames.length != durations.length) {
+            throw new IllegalArgumentException(frames.length + " frames but " + durations.length + " durations");
+        }
+        for (byte[] frame : frames) {
+            if (frame.length != width * height) {
+                throw new IllegalArgumentException("Frame does not match " + width + "x" + height);
+            }
+        }
+        this.width = width;
+        this.height = height;
+        this.shape = shape;
+        this.durations = durations;
+        this.frames = frames;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getShape() {
+        return shape;
+    }
+
+    public int getFrameCount() {
+        return durations.length;
+    }
+
+    public int getFrameDuration(int frame) {
+        return durations[frame];
+    }
+
+    public int getBrightness(int frame, int row, int col) {
+        return frames[frame][row * width + col] & 0xFF;
+    }
+
+    /** Fills {@code out} (width * height entries) with the brightness of every pixel in the frame. */
+    public void copyFrame(int frame, int[] out) {
+        byte[] pixels = frames[frame];
+        for (int i = 0; i < pixels.length; i++) {
+            out[i] = pixels[i] & 0xFF;
+        }
+    }
+
+    /** Like {@link #copyFrame} but as ARGB: white with the brightness as alpha, 0 (transparent) where unlit. */
+    public void copyFrameArgb(int frame, int[] out) {
+        byte[] pixels = frames[frame];
+        for (int i = 0; i < pixels.length; i++) {
+            int brightness = pixels[i] & 0xFF;
+            out[i] = brightness == 0 ? 0 : (brightness << 24) | 0x00FFFFFF;
+        }
+    }
+
+    /** First column of a row that lies inside the shape mask; rows are centered. */
+    public int getRowStart(int row) {
+        return (width - shape[row]) / 2;
+    }
+
+    /** Maps a JSON opacity to brightness; bundled sprites use 0..255, older files 0..1. */
+    public static int opacityToBrightness(double opacity) {
+        if (opacity <= 0) return 0;
+        double scaled = opacity <= 1 ? opacity * 255 : opacity;
+        return (int) Math.min(255, Math.round(scaled));
+    }
+
+    private static byte[][] split(byte[] pixels, int frameSize, int frameCount) {
+        if (pixels.length != frameSize * frameCount) {
+            throw new IllegalArgumentException("Pixel buffer does not match " + frameCount + " frames of " + frameSize + " pixels");
+        }
+        if (frameCount == 1) return new byte[][]{pixels};
+        byte[][] frames = new byte[frameCount][];
+        for (int i = 0; i < frameCount; i++) {
+            frames[i] = Arrays.copyOfRange(pixels, i * frameSize, (i + 1) * frameSize);
+        }
+        return frames;
+    }
+
+    public static int[] fullShape(int width, int height) {
+        int[] shape = new int[height];
+        for (int i = 0; i < height; i++) {
+            shape[i] = width;
+        }
+        return shape;
+    }
+}
@@ -0,0 +1,243 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Streaming decoder for the sprite JSON format (dimensions, shape, frames of "row-col"
+ * indexed pixels). No JSON tree is built: once the dimensions are known, pixels go straight
+ * into the frame arrays handed to {@link SpriteData}. Keys may come in any order; frames or
+ * a shape read before the dimensions are held as lit pixels and raw rows until they arrive.
+ */
+public class SpriteJsonParser {
+    public static final int MAX_DIMENSION = 255;
+
+    public SpriteData parse(String jsonString) throws IOException {
+        return parse(new StringReader(jsonString));
+    }
+
+    public SpriteData parse(Reader source) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        Sprite sprite = new Sprite();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "dimensions":
+                    readDimensions(reader, sprite);
+                    break;
+                case "shape":
+                    sprite.shapeRows = readShape(reader);
+                    break;
+                case "frames":
+                    readFrames(reader, sprite);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return sprite.build();
+    }
+
+    private static void readDimensions(JsonReader reader, Sprite sprite) throws IOException {
+        if (sprite.width != 0) throw new IOException("Sprite dimensions appear twice");
+        int width = 0;
+        int height = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("width".equals(name)) {
+                width = reader.nextInt();
+            } else if ("height".equals(name)) {
+                height = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (width < 1 || width > MAX_DIMENSION || height < 1 || height > MAX_DIMENSION) {
+            throw new IOException("Invalid sprite dimensions " + width + "x" + height);
+        }
+        sprite.width = width;
+        sprite.height = height;
+    }
+
+    // Checked against the dimensions in Sprite.build, since they may not be known yet
+    private static int[] readShape(JsonReader reader) throws IOException {
+        int[] rows = new int[16];
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (count > MAX_DIMENSION) throw new IOException("Sprite shape has more than " + MAX_DIMENSION + " rows");
+            if (count == rows.length) rows = Arrays.copyOf(rows, rows.length * 2);
+            rows[count++] = reader.nextInt();
+        }
+        reader.endArray();
+        return Arrays.copyOf(rows, count);
+    }
+
+    private static void readFrames(JsonReader reader, Sprite sprite) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int frame = sprite.addFrame();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("duration".equals(name)) {
+                    sprite.durations[frame] = reader.nextInt();
+                } else if ("pixels".equals(name)) {
+                    readPixels(reader, sprite, frame);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            sprite.endFrame(frame);
+        }
+        reader.endArray();
+    }
+
+    private static void readPixels(JsonReader reader, Sprite sprite, int frame) throws IOException {
+        byte[] pixels = sprite.frames[frame]; // null until the dimensions are known
+        reader.beginArray();
+        while (reader.hasNext()) {
+            int index = -1;
+            int brightness = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "index":
+                        index = parseIndex(reader.nextString());
+                        break;
+                    case "opacity":
+                        brightness = SpriteData.opacityToBrightness(reader.nextDouble());
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if (brightness == 0 || index < 0) continue;
+            int row = index >>> 16;
+            int col = index & 0xFFFF;
+            if (pixels != null) {
+                // Ensure coordinates are within bounds
+                if (row < sprite.height && col < sprite.width) pixels[row * sprite.width + col] = (byte) brightness;
+            } else if (row < MAX_DIMENSION && col < MAX_DIMENSION) {
+                sprite.addLitPixel(row, col, brightness);
+            }
+        }
+        reader.endArray();
+    }
+
+    // Returns row << 16 | col, or -1 if the index isn't two non-negative integers joined by '-'
+    static int parseIndex(String index) {
+        int row = 0;
+        int col = 0;
+        int digits = 0;
+        boolean inCol = false;
+        for (int i = 0; i < index.length(); i++) {
+            char c = index.charAt(i);
+            if (c == '-' && !inCol && digits > 0) {
+                inCol = true;
+                digits = 0;
+            } else if (c >= '0' && c <= '9' && digits < 4) {
+                if (inCol) col = col * 10 + (c - '0'); else row = row * 10 + (c - '0');
+                digits++;
+            } else {
+                return -1;
+            }
+        }
+        return inCol && digits > 0 ? (row << 16) | col : -1;
+    }
+
+    /** What has been read of one sprite so far. */
+    private static final class Sprite {
+        int width;
+        int height;
+        int[] shapeRows;
+
+        int frameCount;
+        int[] durations = new int[4];
+        byte[][] frames = new byte[4][];
+
+        // Frames read before the dimensions: lit pixels packed as row << 16 | col << 8 | brightness,
+        // frame i owning litPixels[litEnds[i - 1]..litEnds[i])
+        int[] litPixels;
+        int litCount;
+        int[] litEnds;
+
+        int addFrame() {
+            if (frameCount == durations.length) {
+                durations = Arrays.copyOf(durations, frameCount * 2);
+                frames = Arrays.copyOf(frames, frameCount * 2);
+                if (litEnds != null) litEnds = Arrays.copyOf(litEnds, frameCount * 2);
+            }
+            if (width != 0) {
+                frames[frameCount] = new byte[width * height];
+            } else if (litPixels == null) {
+                litPixels = new int[64];
+                litEnds = new int[durations.length];
+            }
+            return frameCount++;
+        }
+
+        void addLitPixel(int row, int col, int brightness) {
+            if (litCount == litPixels.length) litPixels = Arrays.copyOf(litPixels, litCount * 2);
+            litPixels[litCount++] = (row << 16) | (col << 8) | brightness;
+        }
+
+        void endFrame(int frame) {
+            if (frames[frame] == null) litEnds[frame] = litCount;
+        }
+
+        SpriteData build() throws IOException {
+            if (width == 0) throw new IOException("Sprite has no dimensions");
+            int[] shape = shapeRows != null ? checkShape(shapeRows) : SpriteData.fullShape(width, height);
+
+            // A sprite without frames is a single blank frame, as before
+            if (frameCount == 0) {
+                return new SpriteData(width, height, shape, new int[]{0}, new byte[][]{new byte[width * height]});
+            }
+            for (int frame = 0; frame < frameCount; frame++) {
+                if (frames[frame] == null) frames[frame] = placeLitPixels(frame);
+            }
+            return new SpriteData(width, height, shape, Arrays.copyOf(durations, frameCount),
+                    Arrays.copyOf(frames, frameCount));
+        }
+
+        private byte[] placeLitPixels(int frame) {
+            byte[] pixels = new byte[width * height];
+            for (int i = frame == 0 ? 0 : litEnds[frame - 1]; i < litEnds[frame]; i++) {
+                int packed = litPixels[i];
+                int row = packed >>> 16;
+                int col = (packed >>> 8) & 0xFF;
+                if (row < height && col < width) pixels[row * width + col] = (byte) packed;
+            }
+            return pixels;
+        }
+
+        private int[] checkShape(int[] rows) throws IOException {
+            if (rows.length != height) throw new IOException("Sprite shape has " + rows.length + " rows, expected " + height);
+            for (int row = 0; row < rows.length; row++) {
+                if (rows[row] < 0 || rows[row] > width) throw new IOException("Sprite shape row " + row + " is " + rows[row] + " wide");
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+    private long now;
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        breaker = new CircuitBreaker(() -> now, new Random(7));
+    }
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            assertTrue(breaker.tryAcquire());
+            assertFalse(breaker.onFailure());
+        }
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.onFailure());
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void successResetsTheFailureCount() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void letsOneProbeThroughWhenHalfOpen() {
+        open();
+        now += breaker.retryInMs();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void failedProbeReopensForLongerUpToTheCap() {
+        open();
+        long previousMax = CircuitBreaker.BASE_OPEN_MS;
+        for (int i = 0; i < 20; i++) {
+            long wait = breaker.retryInMs();
+            assertTrue("open " + wait + " ms", wait >= previousMax / 2 && wait <= previousMax);
+            now += wait;
+            assertTrue(breaker.tryAcquire());
+            assertTrue(breaker.onFailure());
+            previousMax = Math.min(CircuitBreaker.MAX_OPEN_MS, previousMax * 2);
+        }
+        assertTrue(breaker.retryInMs() <= CircuitBreaker.MAX_OPEN_MS);
+    }
+
+    @Test
+    public void jitterSpreadsOpenPeriods() {
+        long first = openedFor(new Random(1));
+        long second = openedFor(new Random(2));
+
+        assertNotEquals(first, second);
+    }
+
+    private long openedFor(Random random) {
+        CircuitBreaker other = new CircuitBreaker(() -> now, random);
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            other.tryAcquire();
+            other.onFailure();
+        }
+        return other.retryInMs();
+    }
+
+    private void open() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class EndpointSelectorTest {
+    private MockWebServer fast;
+    private MockWebServer slow;
+    private String deadUrl;
+    private long now;
+    private final List<String> changes = new CopyOnWriteArrayList<>();
+    private EndpointSelector selector;
+
+    @Before
+    public void setUp() throws IOException {
+        fast = new MockWebServer();
+        fast.start();
+        slow = new MockWebServer();
+        slow.start();
+        MockWebServer dead = new MockWebServer();
+        dead.start();
+        deadUrl = dead.url("/").toString();
+        dead.shutdown();
+        selector = new EndpointSelector(new OkHttpClient(), () -> now, changes::add);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        fast.shutdown();
+        slow.shutdown();
+    }
+
+    @Test
+    public void pinsTheFastestHealthyEndpoint() throws Exception {
+        slow.enqueue(new MockResponse().setHeadersDelay(400, TimeUnit.MILLISECONDS));
+        fast.enqueue(new MockResponse());
+        selector.configure(urls(slow, fast), "token");
+        assertEquals(url(slow), selector.current());
+
+        probeAndWait();
+
+        assertEquals(url(fast), selector.current());
+        assertEquals(Collections.singletonList(url(fast)), changes);
+        assertEquals("Bearer token", fast.takeRequest().getHeader("Authorization"));
+        Map<String, Long> latencies = awaitLatencies(2);
+        assertTrue(latencies.toString(), latencies.get(url(fast)) < latencies.get(url(slow)));
+    }
+
+    @Test
+    public void skipsEndpointsThatFailOrAnswerWithServerErrors() throws Exception {
+        slow.enqueue(new MockResponse().setResponseCode(503));
+        fast.enqueue(new MockResponse().setResponseCode(401)); // a bad token still proves the path works
+        selector.configure(Arrays.asList(deadUrl, url(slow), url(fast)), "token");
+
+        probeAndWait();
+
+        assertEquals(url(fast), selector.current());
+        Map<String, Long> latencies = awaitLatencies(3);
+        assertEquals(EndpointSelector.FAILED, (long) latencies.get(deadUrl));
+        assertEquals(EndpointSelector.FAILED, (long) latencies.get(url(slow)));
+    }
+
+    @Test
+    public void keepsTheCurrentEndpointWhenEveryProbeFails() throws Exception {
+        slow.enqueue(new MockResponse().setResponseCode(500));
+        selector.configure(Arrays.asList(deadUrl, url(slow)), "token");
+
+        probeAndWait();
+
+        assertEquals(deadUrl, selector.current());
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void offTheLocalNetworkLanUrlsAreSkippedWithoutProbing() {
+        selector.configure(Arrays.asList("http://192.168.1.5:8123", "https://ha.example.com"), "token");
+        assertEquals("http://192.168.1.5:8123/", selector.current());
+
+        selector.setLocalNetwork(false);
+        assertEquals("https://ha.example.com/", selector.current());
+        assertEquals(Collections.singletonList("https://ha.example.com/"), changes);
+
+        // Only one candidate left, so there is nothing to probe
+        CountDownLatch settled = new CountDownLatch(1);
+        selector.probe(settled::countDown);
+        assertEquals(0, settled.getCount());
+        assertTrue(selector.getLatencies().isEmpty());
+    }
+
+    @Test
+    public void probesAgainAfterTheIntervalOrAFailure() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            fast.enqueue(new MockResponse());
+            slow.enqueue(new MockResponse());
+        }
+        selector.configure(urls(fast, slow), "token");
+        selector.maybeReprobe(); // never probed yet
+        awaitRequests(1);
+
+        now += EndpointSelector.MIN_PROBE_GAP_MS - 1;
+        selector.maybeReprobe();
+        selector.onEndpointFailed(selector.current());
+        assertEquals(1, slow.getRequestCount());
+
+        now += 1;
+        selector.onEndpointFailed(selector.current());
+        awaitRequests(2);
+
+        now += EndpointSelector.REPROBE_INTERVAL_MS - 1;
+        selector.maybeReprobe();
+        assertEquals(2, slow.getRequestCount());
+        now += 1;
+        selector.maybeReprobe();
+        awaitRequests(3);
+    }
+
+    @Test
+    public void parsesWhatTheUserTyped() {
+        assertEquals(Arrays.asList("http://192.168.1.5:8123", "https://ha.example.com"),
+                EndpointSelector.parseUrls(" 192.168.1.5:8123,https://ha.example.com "));
+        assertEquals(Arrays.asList("http://a.local", "https://b.example.com"),
+                EndpointSelector.parseUrls("http://a.local  https://b.example.com, http://a.local"));
+        assertTrue(EndpointSelector.parseUrls(" , ").isEmpty());
+        assertTrue(EndpointSelector.parseUrls(null).isEmpty());
+    }
+
+    @Test
+    public void clientSendsRequestsToThePinnedEndpoint() throws Exception {
+        fast.enqueue(new MockResponse()); // probe
+        fast.enqueue(new MockResponse()); // connection test
+        HomeAssistantApiClient client = new HomeAssistantApiClient(new OkHttpClient(), () -> now);
+        client.configure(Arrays.asList(deadUrl, url(fast)), "token");
+
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        client.testConnection(new HomeAssistantApiClient.ApiCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean connected) {
+                result.complete(connected);
+            }
+
+            @Override
+            public void onError(ApiError error) {
+                result.completeExceptionally(new AssertionError(error.toString()));
+            }
+        });
+
+        assertTrue(result.get(5, TimeUnit.SECONDS));
+        assertEquals(url(fast), client.getEndpoint());
+        assertEquals(2, fast.getRequestCount());
+    }
+
+    private void probeAndWait() throws InterruptedException {
+        CountDownLatch settled = new CountDownLatch(1);
+        selector.probe(settled::countDown);
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+    }
+
+    private Map<String, Long> awaitLatencies(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        Map<String, Long> latencies = selector.getLatencies();
+        while (latencies.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            latencies = selector.getLatencies();
+        }
+        return latencies;
+    }
+
+    // Waits until both servers have seen {@code rounds} probes and the last round is over
+    private void awaitRequests(int rounds) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((fast.getRequestCount() < rounds || slow.getRequestCount() < rounds || selector.isProbing())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(rounds, slow.getRequestCount());
+        assertFalse(selector.isProbing());
+    }
+
+    private static String url(MockWebServer server) {
+        return server.url("/").toString();
+    }
+
+    private static List<String> urls(MockWebServer first, MockWebServer second) {
+        return Arrays.asList(url(first), url(second));
+    }
+}
@@ -0,0 +1,59 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntityStatesDecoderTest {
+    private static final String STATES = "["
+            + "{\"entity_id\":\"sensor.power\",\"state\":\"12\",\"attributes\":{\"friendly_name\":\"Power\",\"history\":[1,2,{\"x\":[3]}]}},"
+            + "{\"entity_id\":\"light.kitchen\",\"state\":\"on\",\"attributes\":{\"brightness\":200,\"friendly_name\":\"Kitchen\",\"rgb_color\":[1,2,3]},\"context\":{\"id\":\"a\"}},"
+            + "{\"state\":\"off\",\"entity_id\":\"switch.fan\",\"attributes\":{\"device_class\":\"outlet\"}},"
+            + "{\"entity_id\":\"lightning.strike\",\"state\":\"on\"},"
+            + "{\"entity_id\":\"input_boolean.guest\",\"state\":\"off\",\"attributes\":{\"friendly_name\":\"Guest\"}}"
+            + "]";
+
+    @Test
+    public void keepsOnlyRequestedDomains() throws IOException {
+        List<HomeAssistantEntity> entities = decode(new String[]{"light", "switch", "input_boolean"}, 10);
+
+        assertEquals(3, entities.size());
+        assertEquals("light.kitchen", entities.get(0).getEntityId());
+        assertEquals("Kitchen", entities.get(0).getFriendlyName());
+        assertTrue(entities.get(0).isOn());
+        assertEquals("switch.fan", entities.get(1).getEntityId());
+        assertEquals("switch.fan", entities.get(1).getFriendlyName());
+        assertEquals("off", entities.get(1).getState());
+        assertEquals("input_boolean.guest", entities.get(2).getEntityId());
+    }
+
+    @Test
+    public void deliversInBatches() throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        int total = new EntityStatesDecoder(null, 2).decode(new StringReader(STATES), batch -> sizes.add(batch.size()));
+
+        assertEquals(5, total);
+        assertEquals(List.of(2, 2, 1), sizes);
+    }
+
+    @Test
+    public void domainMatchRequiresDot() {
+        EntityStatesDecoder decoder = new EntityStatesDecoder(new String[]{"light"}, 1);
+        assertTrue(decoder.matchesDomain("light.a"));
+        assertFalse(decoder.matchesDomain("lightning.a"));
+        assertFalse(decoder.matchesDomain("light"));
+    }
+
+    private static List<HomeAssistantEntity> decode(String[] domains, int batchSize) throws IOException {
+        List<HomeAssistantEntity> out = new ArrayList<>();
+        new EntityStatesDecoder(domains, batchSize).decode(new StringReader(STATES), out::addAll);
+        return out;
+    }
+}
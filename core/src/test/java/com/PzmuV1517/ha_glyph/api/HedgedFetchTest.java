@@ -0,0 +1,174 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+import com.PzmuV1517.ha_glyph.util.Metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/**
+ * State fetches sent a second time when the first is slower than usual, within the hedge
+ * budget, against a local MockWebServer.
+ */
+public class HedgedFetchTest {
+    private static final String STATE = "{\"entity_id\":\"light.a\",\"state\":\"on\"}";
+
+    private MockWebServer server;
+    private HomeAssistantApiClient client;
+    private final Metrics.Counter sent = Metrics.get().counter("api.hedges");
+    private final Metrics.Counter won = Metrics.get().counter("api.hedges.won");
+    private final Metrics.Counter skipped = Metrics.get().counter("api.hedges.skipped");
+    private long sentBefore;
+    private long wonBefore;
+    private long skippedBefore;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new HomeAssistantApiClient(new OkHttpClient(), () -> 0);
+        client.configure(server.url("/").toString(), "token");
+        sentBefore = sent.get();
+        wonBefore = won.get();
+        skippedBefore = skipped.get();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void noHedgeUntilLatenciesAreKnown() throws Exception {
+        server.enqueue(new MockResponse().setBody(STATE).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, hedgesSent());
+    }
+
+    @Test
+    public void slowFetchIsHedgedAndTheFasterAnswerWins() throws Exception {
+        client.setHedging(0.9, 1);
+        warmUp(20);
+        // The first attempt isn't answered until the fetch is done, so only the hedge can finish it
+        CountDownLatch release = new CountDownLatch(1);
+        server.setDispatcher(new HoldFirstDispatcher(release));
+        try {
+            assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(22, server.getRequestCount());
+        assertEquals(1, hedgesSent());
+        assertEquals(1, won.get() - wonBefore);
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void failedFirstAttemptWaitsForTheHedge() throws Exception {
+        client.setHedging(0.9, 1);
+        warmUp(20);
+        server.enqueue(new MockResponse().setResponseCode(503).setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setBody(STATE).setHeadersDelay(600, TimeUnit.MILLISECONDS));
+
+        assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        assertEquals(1, won.get() - wonBefore);
+    }
+
+    @Test
+    public void hedgesStayWithinTheBudget() throws Exception {
+        double budget = 0.2;
+        client.setHedging(0.5, budget);
+        SlowDispatcher dispatcher = new SlowDispatcher();
+        server.setDispatcher(dispatcher);
+        int fetches = 0;
+        for (int i = 0; i < 10; i++, fetches++) {
+            assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        }
+
+        dispatcher.delayMs = 100;
+        for (int i = 0; i < 15; i++, fetches++) {
+            assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        }
+
+        long hedges = hedgesSent();
+        assertTrue("hedges " + hedges, hedges >= 1);
+        assertTrue("hedges " + hedges, hedges <= budget * fetches);
+        assertTrue(skipped.get() > skippedBefore);
+        assertEquals(fetches + hedges, server.getRequestCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void budgetAboveOneWouldMoreThanDoubleLoad() {
+        client.setHedging(0.95, 1.5);
+    }
+
+    private void warmUp(int fetches) throws Exception {
+        for (int i = 0; i < fetches; i++) {
+            server.enqueue(new MockResponse().setBody(STATE));
+            fetch().get(5, TimeUnit.SECONDS);
+        }
+        assertNotEquals(-1, client.getStateLatency().percentile(0.9));
+    }
+
+    private long hedgesSent() {
+        return sent.get() - sentBefore;
+    }
+
+    private CompletableFuture<HomeAssistantEntity> fetch() {
+        CompletableFuture<HomeAssistantEntity> entity = new CompletableFuture<>();
+        client.refreshEntityState("light.a", new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+            @Override
+            public void onSuccess(HomeAssistantEntity result) {
+                entity.complete(result);
+            }
+
+            @Override
+            public void onError(ApiError apiError) {
+                entity.completeExceptionally(new AssertionError(apiError.toString()));
+            }
+        });
+        return entity;
+    }
+
+    private static class HoldFirstDispatcher extends Dispatcher {
+        private final CountDownLatch release;
+        private final AtomicBoolean held = new AtomicBoolean();
+
+        HoldFirstDispatcher(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            if (held.compareAndSet(false, true)) release.await(10, TimeUnit.SECONDS);
+            return new MockResponse().setBody(STATE);
+        }
+    }
+
+    private static class SlowDispatcher extends Dispatcher {
+        volatile long delayMs;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            return new MockResponse().setBody(STATE).setHeadersDelay(delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
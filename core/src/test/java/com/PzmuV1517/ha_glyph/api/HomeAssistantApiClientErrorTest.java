@@ -0,0 +1,178 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Error kinds reported by HomeAssistantApiClient, and its circuit breaker failing requests
+ * fast once a host keeps failing.
+ */
+public class HomeAssistantApiClientErrorTest {
+    private MockWebServer server;
+    private HomeAssistantApiClient client;
+    private long now;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new HomeAssistantApiClient(new OkHttpClient(), () -> now);
+        client.configure(server.url("/").toString(), "token");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void classifiesHttpStatuses() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(401));
+        server.enqueue(new MockResponse().setResponseCode(403));
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(502));
+
+        assertEquals(ApiError.Kind.AUTH, fetchError().getKind());
+        assertEquals(ApiError.Kind.AUTH, fetchError().getKind());
+        assertEquals(ApiError.Kind.HTTP, fetchError().getKind());
+        ApiError serverError = fetchError();
+        assertEquals(ApiError.Kind.SERVER, serverError.getKind());
+        assertEquals(502, serverError.getHttpCode());
+        assertEquals("HTTP 502: Server Error", serverError.getMessage());
+    }
+
+    @Test
+    public void classifiesUnreadableBodies() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"entity_id\": [oops"));
+
+        assertEquals(ApiError.Kind.PARSE, fetchError().getKind());
+    }
+
+    @Test
+    public void objectsThatAreNoEntityAreParseErrors() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"state\":\"on\"}"));
+        assertEquals(ApiError.Kind.PARSE, fetchError().getKind());
+
+        server.enqueue(new MockResponse());
+        assertEquals(ApiError.Kind.PARSE, fetchError().getKind());
+    }
+
+    @Test
+    public void classifiesRefusedConnections() throws Exception {
+        server.shutdown();
+
+        assertEquals(ApiError.Kind.CONNECT, fetchError().getKind());
+    }
+
+    @Test
+    public void classifiesUnresolvableHosts() throws Exception {
+        client.configure("http://ha-glyph-test.invalid/", "token");
+
+        assertEquals(ApiError.Kind.DNS, fetchError().getKind());
+    }
+
+    @Test
+    public void authErrorsAreTerminalAndDoNotTripTheBreaker() throws Exception {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD + 1; i++) {
+            server.enqueue(new MockResponse().setResponseCode(401));
+            assertTrue(fetchError().isTerminal());
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void failsFastWhileOpenThenProbes() throws Exception {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            server.enqueue(new MockResponse().setResponseCode(503));
+            assertEquals(ApiError.Kind.SERVER, fetchError().getKind());
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(ApiError.Kind.CIRCUIT_OPEN, fetchError().getKind());
+        }
+        assertEquals(CircuitBreaker.FAILURE_THRESHOLD, server.getRequestCount());
+
+        now += client.getCircuitBreaker().retryInMs();
+        server.enqueue(new MockResponse().setBody("{\"entity_id\":\"light.a\",\"state\":\"on\"}"));
+        assertTrue(fetch().get(5, TimeUnit.SECONDS).isOn());
+        assertEquals(CircuitBreaker.State.CLOSED, client.getCircuitBreaker().getState());
+        assertEquals(CircuitBreaker.FAILURE_THRESHOLD + 1, server.getRequestCount());
+    }
+
+    @Test
+    public void keepsOneBreakerPerHost() throws Exception {
+        CircuitBreaker first = client.getCircuitBreaker();
+        client.configure("http://other-host:8123/", "token");
+        assertNotSame(first, client.getCircuitBreaker());
+
+        client.configure(server.url("/").toString(), "token");
+        assertSame(first, client.getCircuitBreaker());
+    }
+
+    @Test
+    public void errorsCarryTheMessageTheUiShows() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(500));
+        CompletableFuture<String> message = new CompletableFuture<>();
+        client.getEntityState("light.a", new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+            @Override
+            public void onSuccess(HomeAssistantEntity result) {
+                message.complete(null);
+            }
+
+            @Override
+            public void onError(ApiError error) {
+                message.complete(error.getMessage());
+            }
+        });
+
+        assertEquals("HTTP 500: Server Error", message.get(5, TimeUnit.SECONDS));
+    }
+
+    private ApiError fetchError() throws Exception {
+        CompletableFuture<ApiError> error = new CompletableFuture<>();
+        client.refreshEntityState("light.a", new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+            @Override
+            public void onSuccess(HomeAssistantEntity result) {
+                error.complete(null);
+            }
+
+            @Override
+            public void onError(ApiError apiError) {
+                error.complete(apiError);
+            }
+        });
+        ApiError result = error.get(10, TimeUnit.SECONDS);
+        assertNotNull("request succeeded", result);
+        return result;
+    }
+
+    private CompletableFuture<HomeAssistantEntity> fetch() {
+        CompletableFuture<HomeAssistantEntity> entity = new CompletableFuture<>();
+        client.refreshEntityState("light.a", new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+            @Override
+            public void onSuccess(HomeAssistantEntity result) {
+                entity.complete(result);
+            }
+
+            @Override
+            public void onError(ApiError apiError) {
+                entity.completeExceptionally(new AssertionError(apiError.toString()));
+            }
+        });
+        return entity;
+    }
+}
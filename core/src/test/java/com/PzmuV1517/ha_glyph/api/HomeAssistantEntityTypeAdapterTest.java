@@ -0,0 +1,70 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HomeAssistantEntityTypeAdapterTest {
+    private static final Type LIST_TYPE = new TypeToken<List<HomeAssistantEntity>>(){}.getType();
+
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(HomeAssistantEntity.class, new HomeAssistantEntityTypeAdapter())
+            .create();
+
+    @Test
+    public void matchesReflectiveBinding() {
+        String json = StatesFixtures.states(240);
+        List<HomeAssistantEntity> expected = new Gson().fromJson(json, LIST_TYPE);
+        List<HomeAssistantEntity> actual = gson.fromJson(json, LIST_TYPE);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            HomeAssistantEntity e = expected.get(i);
+            HomeAssistantEntity a = actual.get(i);
+            assertEquals(e.getEntityId(), a.getEntityId());
+            assertEquals(e.getState(), a.getState());
+            assertEquals(e.getFriendlyName(), a.getFriendlyName());
+            assertEquals(e.getAttributes().getDeviceClass(), a.getAttributes().getDeviceClass());
+            assertEquals(e.getDomain(), a.getDomain());
+        }
+    }
+
+    @Test
+    public void sharesRepeatedStatesAndDomains() {
+        List<HomeAssistantEntity> entities = gson.fromJson(
+                "[{\"entity_id\":\"light.a\",\"state\":\"on\"},{\"entity_id\":\"light.b\",\"state\":\"on\"}]", LIST_TYPE);
+
+        assertSame(entities.get(0).getState(), entities.get(1).getState());
+        assertSame(entities.get(0).getDomain(), entities.get(1).getDomain());
+        assertEquals("light", entities.get(0).getDomain());
+    }
+
+    @Test
+    public void toleratesMissingAndNullFields() {
+        List<HomeAssistantEntity> entities = gson.fromJson(
+                "[null,{\"entity_id\":\"switch.x\",\"attributes\":null,\"state\":null},{\"state\":\"on\"}]", LIST_TYPE);
+
+        assertNull(entities.get(0));
+        assertEquals("unknown", entities.get(1).getState());
+        assertEquals("switch.x", entities.get(1).getFriendlyName());
+        assertNull(entities.get(2));
+    }
+
+    @Test
+    public void writesTheFieldsItReads() {
+        HomeAssistantEntity entity = new HomeAssistantEntity("fan.attic", "on", "Attic", null);
+        HomeAssistantEntity copy = gson.fromJson(gson.toJson(entity), HomeAssistantEntity.class);
+
+        assertEquals("fan.attic", copy.getEntityId());
+        assertEquals("on", copy.getState());
+        assertEquals("Attic", copy.getFriendlyName());
+    }
+}
@@ -0,0 +1,82 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.util.Metrics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class HttpTransportTest {
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void clientIsShared() {
+        assertSame(HttpTransport.get().client(), HttpTransport.get().client());
+    }
+
+    @Test
+    public void steadyStatePollsReuseOneConnection() throws Exception {
+        OkHttpClient client = HttpTransport.get().client();
+        client.connectionPool().evictAll();
+        Metrics.Counter opened = Metrics.get().counter("http.connections.opened");
+        Metrics.Counter acquired = Metrics.get().counter("http.connections.acquired");
+        long openedBefore = opened.get();
+        long acquiredBefore = acquired.get();
+
+        for (int i = 0; i < 10; i++) {
+            server.enqueue(new MockResponse().setBody("{\"entity_id\":\"light.a\",\"state\":\"on\"}"));
+            try (Response response = client.newCall(new Request.Builder().url(server.url("/api/states/light.a")).build()).execute()) {
+                assertTrue(response.isSuccessful());
+                response.body().string();
+            }
+        }
+
+        assertEquals(1, opened.get() - openedBefore);
+        assertEquals(10, acquired.get() - acquiredBefore);
+        // The server numbers requests per connection
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, server.takeRequest().getSequenceNumber());
+        }
+    }
+
+    @Test
+    public void preconnectIsLeftOutOfTheConnectionCounters() throws Exception {
+        HttpTransport.get().client().connectionPool().evictAll();
+        Metrics.Counter opened = Metrics.get().counter("http.connections.opened");
+        Metrics.Counter acquired = Metrics.get().counter("http.connections.acquired");
+        Metrics.Counter preconnects = Metrics.get().counter("http.preconnects");
+        long openedBefore = opened.get();
+        long acquiredBefore = acquired.get();
+        long preconnectsBefore = preconnects.get();
+        server.enqueue(new MockResponse());
+
+        HttpTransport.get().preconnect(server.url("/").toString());
+
+        assertEquals("HEAD", server.takeRequest(5, TimeUnit.SECONDS).getMethod());
+        assertEquals(1, preconnects.get() - preconnectsBefore);
+        assertEquals(0, opened.get() - openedBefore);
+        assertEquals(0, acquired.get() - acquiredBefore);
+    }
+}
@@ -0,0 +1,101 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+/** State fetches that share one request, and answers that arrive out of order. */
+public class SingleFlightFetchTest {
+    private static final String ON = "{\"entity_id\":\"light.a\",\"state\":\"on\"}";
+    private static final String OFF = "{\"entity_id\":\"light.a\",\"state\":\"off\"}";
+
+    private MockWebServer server;
+    private HomeAssistantApiClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new HomeAssistantApiClient(new OkHttpClient(), () -> 0);
+        client.setHedging(0, 0);
+        client.configure(server.url("/").toString(), "token");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void concurrentCallsShareOneRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody(ON).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<HomeAssistantEntity> first = fetch(false);
+        CompletableFuture<HomeAssistantEntity> second = fetch(false);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isOn());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isOn());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void olderAnswerArrivingLastGetsTheNewerState() throws Exception {
+        // The first request is answered slowly with the state from before a toggle
+        AtomicInteger dispatched = new AtomicInteger();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return dispatched.incrementAndGet() == 1
+                        ? new MockResponse().setBody(OFF).setHeadersDelay(400, TimeUnit.MILLISECONDS)
+                        : new MockResponse().setBody(ON);
+            }
+        });
+
+        CompletableFuture<HomeAssistantEntity> older = fetch(false);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatched.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        CompletableFuture<HomeAssistantEntity> newer = fetch(true);
+
+        assertTrue(newer.get(5, TimeUnit.SECONDS).isOn());
+        assertTrue("older fetch must not report the outdated state", older.get(5, TimeUnit.SECONDS).isOn());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    private CompletableFuture<HomeAssistantEntity> fetch(boolean forceNew) {
+        CompletableFuture<HomeAssistantEntity> entity = new CompletableFuture<>();
+        HomeAssistantApiClient.ApiCallback<HomeAssistantEntity> callback = new HomeAssistantApiClient.ApiCallback<HomeAssistantEntity>() {
+            @Override
+            public void onSuccess(HomeAssistantEntity result) {
+                entity.complete(result);
+            }
+
+            @Override
+            public void onError(ApiError apiError) {
+                entity.completeExceptionally(new AssertionError(apiError.toString()));
+            }
+        };
+        if (forceNew) {
+            client.refreshEntityState("light.a", callback);
+        } else {
+            client.getEntityState("light.a", callback);
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,46 @@
+package com.PzmuV1517.ha_glyph.model;
+
+import com.PzmuV1517.ha_glyph.util.EntityFixtures;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Footprint of a 10,000 entity device list in an EntityStore, counted from the sizes of its
+ * column arrays rather than measured off the heap. A heap comparison against the entity List
+ * belongs in a JMH run with the gc profiler, not here.
+ */
+public class EntityStoreFootprintTest {
+    private static final int ENTITIES = 10_000;
+    // Per row: two ints of offsets and two byte ids
+    private static final int COLUMN_BYTES_PER_ROW = 10;
+    /*
+     * A fixture entity has about 47 chars of entity_id and friendly name, so 2 bytes a char
+     * plus the columns comes to about 105 bytes; doubling growth may leave up to as much
+     * again unused.
+     */
+    private static final int BUDGET_PER_ENTITY = 220;
+
+    @Test
+    public void columnsStayWithinTheBudgetPerEntity() {
+        EntityStore store = EntityStore.of(EntityFixtures.generate(ENTITIES));
+
+        long bytes = store.columnBytes();
+        String sizes = bytes + " bytes for " + store.size() + " entities, " + store.charCount() + " chars";
+        assertEquals(ENTITIES, store.size());
+        assertTrue(sizes, bytes <= (long) BUDGET_PER_ENTITY * ENTITIES);
+        // Whatever the spare capacity, the used part is the chars and the columns
+        assertTrue(sizes, bytes >= 2L * store.charCount() + (long) COLUMN_BYTES_PER_ROW * ENTITIES);
+    }
+
+    @Test
+    public void appendingInBatchesKeepsTheBudget() {
+        EntityStore store = EntityStore.EMPTY;
+        for (int i = 0; i < 10; i++) {
+            store = store.append(EntityFixtures.generate(ENTITIES / 10));
+        }
+
+        assertTrue(store.columnBytes() + " bytes", store.columnBytes() <= (long) BUDGET_PER_ENTITY * ENTITIES);
+    }
+}
@@ -0,0 +1,89 @@
+package com.PzmuV1517.ha_glyph.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntityStoreTest {
+    @Test
+    public void keepsEveryField() {
+        EntityStore store = EntityStore.of(Arrays.asList(
+                new HomeAssistantEntity("light.kitchen", "on", "Kitchen Ceiling", null),
+                new HomeAssistantEntity("switch.kettle", "off", null, "outlet"),
+                new HomeAssistantEntity("input_boolean.guest_mode", null, "G\u00e4ste", null)));
+
+        assertEquals(3, store.size());
+        assertEquals("light.kitchen", store.getEntityId(0));
+        assertEquals("light", store.getDomain(0));
+        assertEquals("Kitchen Ceiling", store.getFriendlyName(0));
+        assertTrue(store.isOn(0));
+        assertEquals("switch.kettle", store.getFriendlyName(1));
+        assertEquals("off", store.getState(1));
+        assertFalse(store.isOn(1));
+        assertEquals("input_boolean", store.getDomain(2));
+        assertEquals("unknown", store.getState(2));
+        assertEquals("G\u00e4ste", store.get(2).getFriendlyName());
+        assertEquals(2, store.indexOf("input_boolean.guest_mode"));
+        assertEquals(-1, store.indexOf("light.kitche"));
+    }
+
+    @Test
+    public void statesBeyondTheInternTableAreKept() {
+        List<HomeAssistantEntity> sensors = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            sensors.add(new HomeAssistantEntity("sensor.power_" + i, Integer.toString(i), null, null));
+        }
+        EntityStore store = EntityStore.of(sensors);
+
+        for (int i = 0; i < 600; i++) {
+            assertEquals(Integer.toString(i), store.getState(i));
+        }
+    }
+
+    @Test
+    public void appendLeavesEarlierSnapshotsAlone() {
+        EntityStore first = EntityStore.of(entities("light", 3));
+        EntityStore second = first.append(entities("switch", 100));
+        // Branches off an older snapshot must not overwrite rows of the newer one
+        EntityStore branch = first.append(entities("fan", 2));
+
+        assertEquals(3, first.size());
+        assertEquals(103, second.size());
+        assertEquals(5, branch.size());
+        assertEquals("switch.device_99", second.getEntityId(102));
+        assertEquals("fan.device_0", branch.getEntityId(3));
+        assertEquals("light.device_2", branch.getEntityId(2));
+
+        assertTrue(second.startsWith(first));
+        assertTrue(branch.startsWith(EntityStore.EMPTY));
+        assertFalse(branch.startsWith(second));
+        assertFalse(first.startsWith(second));
+    }
+
+    @Test
+    public void comparesRowsAcrossSnapshots() {
+        EntityStore before = EntityStore.of(Arrays.asList(new HomeAssistantEntity("light.a", "on", "A", null)));
+        EntityStore after = EntityStore.of(Arrays.asList(
+                new HomeAssistantEntity("light.b", "on", "A", null),
+                new HomeAssistantEntity("light.a", "off", "A", null)));
+
+        assertFalse(before.sameEntityId(0, after, 0));
+        assertTrue(before.sameEntityId(0, after, 1));
+        assertTrue(before.sameStateAndName(0, after, 0));
+        assertFalse(before.sameStateAndName(0, after, 1));
+        assertTrue(after.entityIdEquals(1, "light.a"));
+        assertFalse(after.entityIdEquals(1, null));
+    }
+
+    private static List<HomeAssistantEntity> entities(String domain, int count) {
+        List<HomeAssistantEntity> entities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            entities.add(new HomeAssistantEntity(domain + ".device_" + i, i % 2 == 0 ? "on" : "off", "Device " + i, null));
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,89 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.PzmuV1517.ha_glyph.model.EntityStore;
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EntitySearchIndexTest {
+    static final String[] QUERIES = {"k", "li", "light", "kitchen", "room 1", "_12", "ceiling", "zzz", "fan.", "o"};
+
+    @Test
+    public void matchesTheSameEntitiesAsSubstringSearch() {
+        List<HomeAssistantEntity> devices = EntityFixtures.generate(3000);
+        EntitySearchIndex index = new EntitySearchIndex(EntityStore.of(devices));
+
+        for (String query : QUERIES) {
+            assertEquals(query, new HashSet<>(ids(EntityFixtures.linearSearch(devices, query))), new HashSet<>(ids(index, index.search(query))));
+        }
+    }
+
+    @Test
+    public void ranksExactThenPrefixThenContains() {
+        EntitySearchIndex index = index(
+                entity("light.desk_lamp", "Desk Lamp"),
+                entity("light.lamp", "Hall"),
+                entity("switch.lamp_plug", "Plug"),
+                entity("light.table", "Lamp"));
+
+        assertEquals(Arrays.asList("light.lamp", "light.table", "light.desk_lamp", "switch.lamp_plug"), ids(index, index.search("lamp")));
+        assertEquals(Arrays.asList("light.desk_lamp"), ids(index, index.search("sk la")));
+    }
+
+    @Test
+    public void entitiesWithoutNameMatchOnTheirId() {
+        EntitySearchIndex index = index(entity("light.kitchen", null), entity("light.hall", "Hallway"));
+
+        assertEquals(Arrays.asList("light.kitchen"), ids(index, index.search("light.kitchen")));
+        assertEquals(Arrays.asList("light.hall"), ids(index, index.search("hallway")));
+    }
+
+    @Test
+    public void blankQueryReturnsEverythingInOrder() {
+        List<HomeAssistantEntity> devices = EntityFixtures.generate(10);
+        EntitySearchIndex index = new EntitySearchIndex(EntityStore.of(devices));
+        assertEquals(ids(devices), ids(index, index.search("  ")));
+        assertEquals(ids(devices), ids(index, index.search(null)));
+    }
+
+    @Test
+    public void queriesAreNormalized() {
+        EntitySearchIndex index = index(entity("light.kitchen", "  Kitchen Ceiling "));
+        assertEquals(1, index.search("  KITCHEN ").length);
+        assertEquals(1, index.search("kitchen ceiling").length);
+    }
+
+    @Test
+    public void cancelledSearchReturnsNull() {
+        EntitySearchIndex index = new EntitySearchIndex(EntityStore.of(EntityFixtures.generate(2000)));
+        assertNull(index.search("light", () -> true));
+        assertNotNull(index.search("light", () -> false));
+    }
+
+    private static EntitySearchIndex index(HomeAssistantEntity... devices) {
+        return new EntitySearchIndex(EntityStore.of(Arrays.asList(devices)));
+    }
+
+    private static HomeAssistantEntity entity(String id, String name) {
+        return new HomeAssistantEntity(id, "off", name, null);
+    }
+
+    private static List<String> ids(List<HomeAssistantEntity> entities) {
+        List<String> ids = new ArrayList<>();
+        for (HomeAssistantEntity e : entities) ids.add(e.getEntityId());
+        return ids;
+    }
+
+    private static List<String> ids(EntitySearchIndex index, int[] rows) {
+        List<String> ids = new ArrayList<>();
+        for (int row : rows) ids.add(index.getStore().getEntityId(row));
+        return ids;
+    }
+}
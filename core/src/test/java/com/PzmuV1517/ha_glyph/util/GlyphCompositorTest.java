@@ -0,0 +1,107 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compositor rules on the JVM; app/src/androidTest compares the output with
+ * GlyphMatrixFrame.render for the bundled sprites.
+ */
+public class GlyphCompositorTest {
+    private static final int SIZE = GlyphCompositor.SIZE;
+
+    @Test
+    public void fullBrightnessPixelIsMaxLevel() {
+        int[] out = new GlyphCompositor().addLayer(filled(255), 0, 255).compose(new int[GlyphCompositor.PIXELS]);
+
+        assertEquals(GlyphCompositor.MAX_LEVEL, out[12 * SIZE + 12]);
+    }
+
+    @Test
+    public void scalesByLayerBrightnessWithSdkRounding() {
+        int[] out = new GlyphCompositor().addLayer(filled(200), 0, 100).compose(new int[GlyphCompositor.PIXELS]);
+
+        assertEquals(200 * 2047 / 255 * 100 / 255, out[12 * SIZE + 12]);
+        assertEquals(0, GlyphCompositor.level(255, 0));
+    }
+
+    @Test
+    public void leavesPixelsOutsideTheMaskDark() {
+        int[] out = new GlyphCompositor().addLayer(filled(255), 0, 255).compose(new int[GlyphCompositor.PIXELS]);
+
+        for (int row = 0; row < SIZE; row++) {
+            int start = (SIZE - GlyphCompositor.MATRIX_SHAPE[row]) / 2;
+            for (int col = 0; col < SIZE; col++) {
+                boolean inside = col >= start && col < start + GlyphCompositor.MATRIX_SHAPE[row];
+                assertEquals(row + "-" + col, inside ? GlyphCompositor.MAX_LEVEL : 0, out[row * SIZE + col]);
+            }
+        }
+    }
+
+    @Test
+    public void topmostLitLayerWins() {
+        byte[] dot = new byte[SIZE * SIZE];
+        dot[12 * SIZE + 12] = (byte) 255;
+        SpriteData overlay = new SpriteData(SIZE, SIZE, SpriteData.fullShape(SIZE, SIZE), new int[]{0}, dot);
+
+        int[] out = new GlyphCompositor()
+                .addLayer(filled(255), 0, 51)
+                .addLayer(overlay, 0, 255)
+                .compose(new int[GlyphCompositor.PIXELS]);
+
+        assertEquals(GlyphCompositor.MAX_LEVEL, out[12 * SIZE + 12]);
+        assertEquals(GlyphCompositor.level(255, 51), out[12 * SIZE + 11]);
+    }
+
+    @Test
+    public void overwritesEveryEntryOfAReusedBuffer() {
+        int[] out = new int[GlyphCompositor.PIXELS];
+        Arrays.fill(out, -1);
+        GlyphCompositor compositor = new GlyphCompositor();
+
+        compositor.addLayer(filled(255), 0, 255).compose(out);
+        compositor.clear().compose(out);
+
+        assertArrayEquals(new int[GlyphCompositor.PIXELS], out);
+    }
+
+    @Test
+    public void samplesSmallerSpritesOntoTheGrid() {
+        // 5x5 with only the center lit: the SDK stretches it, nearest sample
+        byte[] pixels = new byte[25];
+        pixels[2 * 5 + 2] = (byte) 255;
+        SpriteData small = new SpriteData(5, 5, SpriteData.fullShape(5, 5), new int[]{0}, pixels);
+
+        int[] out = new GlyphCompositor().addLayer(small, 0, 255).compose(new int[GlyphCompositor.PIXELS]);
+
+        // round(x * 4 / 24) == 2 for x in 9..14
+        for (int i = 0; i < SIZE; i++) {
+            boolean lit = i >= 9 && i <= 14;
+            assertEquals("col " + i, lit ? GlyphCompositor.MAX_LEVEL : 0, out[12 * SIZE + i]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShapeOfWrongHeight() {
+        new GlyphCompositor(new int[]{7, 11, 7});
+    }
+
+    @Test
+    public void fallbackSpritesLightTheMatrix() {
+        GlyphCompositor compositor = new GlyphCompositor();
+        int[] out = new int[GlyphCompositor.PIXELS];
+        for (SpriteData sprite : new SpriteData[]{FallbackSprites.on(), FallbackSprites.off(), FallbackSprites.error()}) {
+            compositor.clear().addLayer(sprite, 0, 255).compose(out);
+            assertTrue(out[12 * SIZE + 12] > 0);
+        }
+    }
+
+    private static SpriteData filled(int brightness) {
+        byte[] pixels = new byte[SIZE * SIZE];
+        Arrays.fill(pixels, (byte) brightness);
+        return new SpriteData(SIZE, SIZE, SpriteData.fullShape(SIZE, SIZE), new int[]{0}, pixels);
+    }
+}
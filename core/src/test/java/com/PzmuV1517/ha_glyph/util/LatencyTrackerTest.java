@@ -0,0 +1,44 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyTrackerTest {
+    @Test
+    public void unknownUntilEnoughSamples() {
+        LatencyTracker tracker = new LatencyTracker(10, 3);
+        tracker.record(5);
+        tracker.record(7);
+
+        assertEquals(LatencyTracker.UNKNOWN, tracker.percentile(0.5));
+        tracker.record(9);
+        assertEquals(7, tracker.percentile(0.5));
+    }
+
+    @Test
+    public void nearestRankPercentiles() {
+        LatencyTracker tracker = new LatencyTracker(100, 1);
+        for (int i = 100; i >= 1; i--) tracker.record(i);
+
+        assertEquals(50, tracker.percentile(0.5));
+        assertEquals(95, tracker.percentile(0.95));
+        assertEquals(100, tracker.percentile(1));
+        assertEquals(1, tracker.percentile(0.001));
+    }
+
+    @Test
+    public void oldSamplesAgeOut() {
+        LatencyTracker tracker = new LatencyTracker(4, 1);
+        for (int i = 0; i < 4; i++) tracker.record(1000);
+        for (int i = 0; i < 4; i++) tracker.record(10);
+
+        assertEquals(4, tracker.size());
+        assertEquals(10, tracker.percentile(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPercentilesOutsideTheRange() {
+        new LatencyTracker(4, 1).percentile(1.5);
+    }
+}
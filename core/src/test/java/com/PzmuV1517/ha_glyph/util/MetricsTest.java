@@ -0,0 +1,111 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @Test
+    public void countersAreSharedByName() {
+        Metrics metrics = new Metrics();
+        Metrics.Counter counter = metrics.counter("a");
+        counter.increment();
+        metrics.counter("a").add(2);
+
+        assertSame(counter, metrics.counter("a"));
+        assertEquals(3, counter.get());
+    }
+
+    @Test
+    public void histogramPercentilesReportBucketBounds() {
+        Metrics.Histogram h = new Metrics().histogram("latency", new long[]{10, 100, 1000});
+        for (int i = 0; i < 90; i++) h.record(5);
+        for (int i = 0; i < 9; i++) h.record(50);
+        h.record(5000);
+
+        assertEquals(100, h.getCount());
+        assertEquals(10, h.percentile(0.50));
+        assertEquals(100, h.percentile(0.99));
+        assertEquals(Long.MAX_VALUE, h.percentile(1.0));
+        assertEquals(5000, h.getMax());
+        assertEquals(90 * 5 + 9 * 50 + 5000, h.getSum());
+    }
+
+    @Test
+    public void valuesOnABoundLandInThatBucket() {
+        Metrics.Histogram h = new Metrics().histogram("h", new long[]{10, 100});
+        h.record(10);
+        assertEquals(10, h.percentile(1.0));
+        h.record(11);
+        assertEquals(100, h.percentile(1.0));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        Metrics.Histogram h = new Metrics().histogram("h", Metrics.LATENCY_MS_BUCKETS);
+        assertEquals(0, h.percentile(0.5));
+        assertEquals(0, h.getMax());
+    }
+
+    @Test
+    public void resetKeepsRegisteredMetrics() {
+        Metrics metrics = new Metrics();
+        Metrics.Counter counter = metrics.counter("c");
+        Metrics.Histogram h = metrics.histogram("h", Metrics.COUNT_BUCKETS);
+        counter.increment();
+        h.record(3);
+
+        metrics.reset();
+
+        assertSame(counter, metrics.counter("c"));
+        assertEquals(0, counter.get());
+        assertEquals(0, h.getCount());
+        h.record(1);
+        assertEquals(1, h.getMax());
+    }
+
+    @Test
+    public void dumpListsEveryMetricSorted() {
+        Metrics metrics = new Metrics();
+        metrics.counter("b.count").add(7);
+        metrics.counter("a.count").increment();
+        metrics.histogram("req.ms", Metrics.LATENCY_MS_BUCKETS).record(42);
+
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out, true));
+        String[] lines = out.toString().split("\n");
+
+        assertEquals("a.count = 1", lines[0].trim());
+        assertEquals("b.count = 7", lines[1].trim());
+        assertEquals("req.ms count=1 p50<=50 p99<=50 max=42 mean=42", lines[2].trim());
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        Metrics metrics = new Metrics();
+        Metrics.Histogram h = metrics.histogram("h", Metrics.LATENCY_MS_BUCKETS);
+        Metrics.Counter counter = metrics.counter("c");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    h.record(i % 200 + offset);
+                    counter.increment();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(40000, h.getCount());
+        assertEquals(40000, counter.get());
+        assertEquals(202, h.getMax());
+    }
+}
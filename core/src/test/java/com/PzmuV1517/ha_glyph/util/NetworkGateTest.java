@@ -0,0 +1,171 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class NetworkGateTest {
+    private FakeConnectivity connectivity;
+    private int suspends;
+    private int resumes;
+    private int networkChanges;
+    private NetworkGate gate;
+
+    @Before
+    public void setUp() {
+        connectivity = new FakeConnectivity();
+        gate = new NetworkGate(connectivity, new NetworkGate.Listener() {
+            @Override
+            public void onSuspend() {
+                suspends++;
+            }
+
+            @Override
+            public void onResume() {
+                resumes++;
+            }
+
+            @Override
+            public void onNetworkChanged() {
+                networkChanges++;
+            }
+        });
+    }
+
+    @Test
+    public void suspendsOnceOnLossAndResumesOnReturn() {
+        connectivity.set(true, false);
+        gate.start(Collections.singletonList("https://ha.example.com"));
+        assertTrue(gate.isReachable());
+
+        connectivity.set(false, false);
+        connectivity.set(false, false);
+        assertFalse(gate.isReachable());
+        assertEquals(1, suspends);
+
+        connectivity.set(true, false);
+        assertTrue(gate.isReachable());
+        assertEquals(1, resumes);
+    }
+
+    @Test
+    public void startReportsTheInitialStateWithoutNotifying() {
+        connectivity.set(false, false);
+        gate.start(Collections.singletonList("https://ha.example.com"));
+
+        assertFalse(gate.isReachable());
+        assertEquals(0, suspends + resumes);
+        assertNotNull(connectivity.listener);
+    }
+
+    @Test
+    public void localServerNeedsWifiEvenWithValidatedCellular() {
+        connectivity.set(true, false);
+        gate.start(Collections.singletonList("http://192.168.1.20:8123"));
+
+        assertTrue(gate.isLocalOnly());
+        assertFalse(gate.isReachable());
+    }
+
+    @Test
+    public void localServerIsReachableOnWifiWithoutInternet() {
+        connectivity.set(false, true);
+        gate.start(Collections.singletonList("http://homeassistant.local:8123"));
+
+        assertTrue(gate.isReachable());
+    }
+
+    @Test
+    public void changingTheUrlRechecksReachability() {
+        connectivity.set(true, false);
+        gate.start(Collections.singletonList("https://ha.example.com"));
+
+        gate.setServerUrls(Collections.singletonList("http://10.0.0.5:8123"));
+        assertEquals(1, suspends);
+
+        gate.setServerUrls(Collections.singletonList("https://ha.example.com"));
+        assertEquals(1, resumes);
+    }
+
+    @Test
+    public void serverWithARemoteUrlStaysReachableOffWifi() {
+        connectivity.set(true, true);
+        gate.start(Arrays.asList("http://192.168.1.20:8123", "https://ha.example.com"));
+        assertFalse(gate.isLocalOnly());
+
+        connectivity.set(true, false);
+        assertTrue(gate.isReachable());
+        assertFalse(gate.isOnLocalNetwork());
+        assertEquals(0, suspends);
+        assertEquals(1, networkChanges);
+
+        connectivity.set(true, false);
+        connectivity.set(true, true);
+        assertEquals(2, networkChanges);
+    }
+
+    @Test
+    public void stopUnregisters() {
+        gate.start(Collections.singletonList("https://ha.example.com"));
+        gate.stop();
+
+        assertNull(connectivity.listener);
+    }
+
+    @Test
+    public void recognisesLocalOnlyUrls() {
+        assertTrue(NetworkGate.isLocalOnly("http://192.168.0.10:8123"));
+        assertTrue(NetworkGate.isLocalOnly("http://10.1.2.3"));
+        assertTrue(NetworkGate.isLocalOnly("http://172.20.0.1:8123"));
+        assertTrue(NetworkGate.isLocalOnly("http://169.254.10.10"));
+        assertTrue(NetworkGate.isLocalOnly("http://homeassistant.local:8123"));
+        assertTrue(NetworkGate.isLocalOnly("http://ha.home.arpa"));
+        assertTrue(NetworkGate.isLocalOnly("http://homeassistant:8123"));
+        assertTrue(NetworkGate.isLocalOnly("http://[fd00::1]:8123"));
+        assertTrue(NetworkGate.isLocalOnly("http://[fe80::1]:8123"));
+
+        assertFalse(NetworkGate.isLocalOnly("https://ha.example.com"));
+        assertFalse(NetworkGate.isLocalOnly("https://abc.ui.nabu.casa"));
+        assertFalse(NetworkGate.isLocalOnly("http://172.32.0.1"));
+        assertFalse(NetworkGate.isLocalOnly("http://100.101.102.103:8123")); // Tailscale works over cellular
+        assertFalse(NetworkGate.isLocalOnly("http://[2001:db8::1]"));
+        assertFalse(NetworkGate.isLocalOnly((String) null));
+        assertFalse(NetworkGate.isLocalOnly("not a url"));
+    }
+
+    private static final class FakeConnectivity implements Connectivity {
+        boolean validated = true;
+        boolean local = true;
+        Listener listener;
+
+        void set(boolean validated, boolean local) {
+            this.validated = validated;
+            this.local = local;
+            if (listener != null) listener.onConnectivityChanged();
+        }
+
+        @Override
+        public boolean hasValidatedNetwork() {
+            return validated;
+        }
+
+        @Override
+        public boolean hasLocalNetwork() {
+            return local;
+        }
+
+        @Override
+        public void start(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void stop() {
+            listener = null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OptimisticToggleTest {
+    private final Metrics.Counter rollbacks = Metrics.get().counter("toggle.rollbacks");
+    private final Metrics.Counter coalesced = Metrics.get().counter("toggle.coalesced");
+    private OptimisticToggle toggle;
+    private long rollbacksBefore;
+    private long coalescedBefore;
+
+    @Before
+    public void setUp() {
+        toggle = new OptimisticToggle();
+        toggle.onServerState(false);
+        rollbacksBefore = rollbacks.get();
+        coalescedBefore = coalesced.get();
+    }
+
+    @Test
+    public void pressShowsPredictionAndServerConfirms() {
+        assertEquals(Boolean.TRUE, toggle.press());
+        assertTrue(toggle.isDisplayedOn());
+
+        assertNull(toggle.onCallSucceeded());
+        assertEquals(OptimisticToggle.RESULT_CONFIRMED, toggle.onServerState(true));
+        assertTrue(toggle.isDisplayedOn());
+        assertFalse(toggle.isPending());
+        assertEquals(0, rollbacks.get() - rollbacksBefore);
+    }
+
+    @Test
+    public void failedCallRollsBack() {
+        toggle.press();
+        toggle.onCallFailed();
+
+        assertFalse(toggle.isDisplayedOn());
+        assertFalse(toggle.isPending());
+        assertEquals(1, rollbacks.get() - rollbacksBefore);
+    }
+
+    @Test
+    public void staleStateInsideConfirmWindowIsIgnored() {
+        toggle.press();
+        assertEquals(OptimisticToggle.RESULT_IGNORED, toggle.onServerState(false)); // poll from before the call
+        toggle.onCallSucceeded();
+        assertEquals(OptimisticToggle.RESULT_IGNORED, toggle.onServerState(false));
+        assertTrue(toggle.isDisplayedOn());
+    }
+
+    @Test
+    public void disagreementAfterConfirmWindowRollsBack() {
+        toggle.press();
+        toggle.onCallSucceeded();
+        toggle.onConfirmTimeout();
+
+        assertEquals(OptimisticToggle.RESULT_ROLLED_BACK, toggle.onServerState(false));
+        assertFalse(toggle.isDisplayedOn());
+        assertEquals(1, rollbacks.get() - rollbacksBefore);
+    }
+
+    @Test
+    public void rapidPressesCoalesceIntoOneFollowUp() {
+        assertEquals(Boolean.TRUE, toggle.press());
+        assertNull(toggle.press()); // off
+        assertNull(toggle.press()); // on
+        assertNull(toggle.press()); // off
+        assertFalse(toggle.isDisplayedOn());
+
+        // First call (on) returns: the newest target (off) goes out once
+        assertEquals(Boolean.FALSE, toggle.onCallSucceeded());
+        assertNull(toggle.onCallSucceeded());
+        assertEquals(OptimisticToggle.RESULT_CONFIRMED, toggle.onServerState(false));
+        assertEquals(3, coalesced.get() - coalescedBefore);
+    }
+
+    @Test
+    public void evenPressesWhileInFlightNeedNoFollowUp() {
+        toggle.press();          // on, sent
+        toggle.press();          // off
+        toggle.press();          // on again, same as sent
+        assertNull(toggle.onCallSucceeded());
+        assertEquals(OptimisticToggle.RESULT_CONFIRMED, toggle.onServerState(true));
+    }
+
+    @Test
+    public void serverChangesAreFollowedWhenNothingIsPending() {
+        assertEquals(OptimisticToggle.RESULT_UPDATED, toggle.onServerState(true));
+        assertTrue(toggle.isDisplayedOn());
+        assertEquals(OptimisticToggle.RESULT_UNCHANGED, toggle.onServerState(true));
+    }
+}
@@ -0,0 +1,159 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PollPolicyTest {
+    private static final long HOUR = 3_600_000;
+    private static final long AOD_TICK_MS = 60_000;
+
+    private long now;
+    private PollPolicy policy;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000;
+        policy = new PollPolicy(() -> now);
+    }
+
+    @Test
+    public void pollsRightAwayWhenShown() {
+        policy.setVisible(true);
+
+        assertEquals(0, policy.nextPollDelayMs());
+    }
+
+    @Test
+    public void pollsFastAfterActivityThenBacksOffToIdle() {
+        policy.setVisible(true);
+        policy.onPolled();
+        assertEquals(PollPolicy.FAST_INTERVAL_MS, policy.nextPollDelayMs());
+
+        now += PollPolicy.FAST_WINDOW_MS;
+        assertEquals(2 * PollPolicy.FAST_INTERVAL_MS, policy.currentIntervalMs());
+        now += PollPolicy.FAST_WINDOW_MS;
+        assertEquals(4 * PollPolicy.FAST_INTERVAL_MS, policy.currentIntervalMs());
+        now += HOUR;
+        assertEquals(PollPolicy.IDLE_INTERVAL_MS, policy.currentIntervalMs());
+
+        policy.onActivity();
+        assertEquals(PollPolicy.FAST_INTERVAL_MS, policy.currentIntervalMs());
+    }
+
+    @Test
+    public void delayCountsFromTheLastPoll() {
+        policy.setVisible(true);
+        policy.onPolled();
+        now += 1500;
+
+        assertEquals(500, policy.nextPollDelayMs());
+        now += 5000;
+        assertEquals(0, policy.nextPollDelayMs());
+    }
+
+    @Test
+    public void noTimerWhileHiddenInAodOrPushed() {
+        assertEquals(PollPolicy.NO_TIMER, policy.nextPollDelayMs());
+
+        policy.setVisible(true);
+        policy.setAod(true);
+        assertEquals(PollPolicy.NO_TIMER, policy.nextPollDelayMs());
+
+        policy.setAod(false);
+        policy.setPushActive(true);
+        assertEquals(PollPolicy.NO_TIMER, policy.nextPollDelayMs());
+
+        policy.setPushActive(false);
+        assertEquals(0, policy.nextPollDelayMs());
+    }
+
+    @Test
+    public void noTimerWithoutANetworkThatReachesTheServer() {
+        policy.setVisible(true);
+        policy.setNetworkAvailable(false);
+        assertEquals(PollPolicy.NO_TIMER, policy.nextPollDelayMs());
+
+        policy.setNetworkAvailable(true);
+        assertEquals(0, policy.nextPollDelayMs());
+    }
+
+    @Test
+    public void showingTheToyAgainCountsAsActivity() {
+        policy.setVisible(true);
+        now += HOUR;
+        policy.setVisible(false);
+        now += HOUR;
+        policy.setVisible(true);
+
+        assertEquals(PollPolicy.FAST_INTERVAL_MS, policy.currentIntervalMs());
+    }
+
+    /**
+     * A day without the WebSocket feed: hidden overnight, shown from 07:00 to 23:00 with AOD
+     * from 09:00 to 17:00, a handful of toggles in the evening. The old loop polled every
+     * 2 s around the clock.
+     */
+    @Test
+    public void simulatedDayPollsFarLessThanAFixedLoop() {
+        long dayStart = now;
+        long[] toggles = {at(dayStart, 7.5), at(dayStart, 18), at(dayStart, 18.01), at(dayStart, 20), at(dayStart, 22.5)};
+        int nextToggle = 0;
+        long nextAodTick = Long.MAX_VALUE;
+        long nextTimer = Long.MAX_VALUE;
+        int timerPolls = 0;
+        int aodPolls = 0;
+        int hiddenPolls = 0;
+
+        while (now < dayStart + 24 * HOUR) {
+            double hour = (now - dayStart) / (double) HOUR;
+            boolean visible = hour >= 7 && hour < 23;
+            boolean aod = visible && hour >= 9 && hour < 17;
+            policy.setVisible(visible);
+            policy.setAod(aod);
+            if (aod && nextAodTick == Long.MAX_VALUE) nextAodTick = now + AOD_TICK_MS;
+            if (!aod) nextAodTick = Long.MAX_VALUE;
+
+            if (nextToggle < toggles.length && now >= toggles[nextToggle]) {
+                policy.onActivity();
+                nextToggle++;
+            }
+            if (now >= nextAodTick) {
+                policy.onPolled();
+                aodPolls++;
+                nextAodTick = now + AOD_TICK_MS;
+            } else if (now >= nextTimer) {
+                policy.onPolled();
+                timerPolls++;
+                if (!visible) hiddenPolls++;
+            }
+            long delay = policy.nextPollDelayMs();
+            nextTimer = delay == PollPolicy.NO_TIMER ? Long.MAX_VALUE : now + delay;
+
+            // Step to whatever happens next: a poll, an AOD tick, a toggle or the next phase
+            long next = Math.min(nextTimer, nextAodTick);
+            if (nextToggle < toggles.length) next = Math.min(next, toggles[nextToggle]);
+            next = Math.min(next, nextPhase(dayStart, now));
+            now = Math.max(next, now + 1);
+        }
+
+        long fixedLoopPolls = 24 * HOUR / 2000;
+        int total = timerPolls + aodPolls;
+        assertEquals(0, hiddenPolls);
+        assertEquals(8 * HOUR / AOD_TICK_MS, aodPolls, 1);
+        assertTrue("polled " + total + " times", total < fixedLoopPolls / 20);
+    }
+
+    private static long at(long dayStart, double hour) {
+        return dayStart + (long) (hour * HOUR);
+    }
+
+    private static long nextPhase(long dayStart, long now) {
+        for (int hour : new int[]{7, 9, 17, 23, 24}) {
+            long t = dayStart + hour * HOUR;
+            if (t > now) return t;
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,91 @@
+package com.PzmuV1517.ha_glyph.api;
+
+import java.util.Random;
+
+/**
+ * Generates /api/states payloads shaped like a large real instance: mostly sensors, with
+ * media_player and climate entities carrying big nested attribute trees and long lists.
+ */
+public final class StatesFixtures {
+    private static final String[] DOMAINS = {
+            "sensor", "sensor", "sensor", "binary_sensor", "light", "switch", "automation",
+            "media_player", "climate", "input_boolean", "fan", "update"
+    };
+
+    private StatesFixtures() {
+    }
+
+    public static String states(int entityCount) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(entityCount * 600);
+        sb.append('[');
+        for (int i = 0; i < entityCount; i++) {
+            if (i > 0) sb.append(',');
+            entity(sb, DOMAINS[i % DOMAINS.length], i, random);
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /** One entity as returned by /api/states/&lt;entity_id&gt;. */
+    public static String entity(String domain) {
+        StringBuilder sb = new StringBuilder(4096);
+        entity(sb, domain, 0, new Random(42));
+        return sb.toString();
+    }
+
+    private static void entity(StringBuilder sb, String domain, int i, Random random) {
+        sb.append("{\"entity_id\":\"").append(domain).append(".entity_").append(i).append("\",");
+        sb.append("\"state\":\"").append(state(domain, random)).append("\",");
+        sb.append("\"attributes\":{");
+        attributes(sb, domain, i, random);
+        sb.append("\"friendly_name\":\"Entity ").append(i).append("\"},");
+        sb.append("\"last_changed\":\"2025-01-01T12:00:00.000000+00:00\",");
+        sb.append("\"last_updated\":\"2025-01-01T12:00:00.000000+00:00\",");
+        sb.append("\"context\":{\"id\":\"01HZX").append(i).append("\",\"parent_id\":null,\"user_id\":null}}");
+    }
+
+    private static String state(String domain, Random random) {
+        switch (domain) {
+            case "sensor": return Integer.toString(random.nextInt(1000));
+            case "media_player": return random.nextBoolean() ? "playing" : "idle";
+            case "climate": return "heat";
+            case "update": return "off";
+            default: return random.nextBoolean() ? "on" : "off";
+        }
+    }
+
+    private static void attributes(StringBuilder sb, String domain, int i, Random random) {
+        switch (domain) {
+            case "sensor":
+                sb.append("\"unit_of_measurement\":\"W\",\"device_class\":\"power\",\"state_class\":\"measurement\",");
+                break;
+            case "light":
+                sb.append("\"supported_color_modes\":[\"color_temp\",\"xy\"],\"brightness\":").append(random.nextInt(256))
+                        .append(",\"xy_color\":[0.31,0.32],\"rgb_color\":[255,240,220],\"min_mireds\":153,\"max_mireds\":500,");
+                break;
+            case "media_player":
+                sb.append("\"source_list\":[");
+                for (int s = 0; s < 40; s++) {
+                    if (s > 0) sb.append(',');
+                    sb.append("\"Source ").append(s).append('"');
+                }
+                sb.append("],\"media_title\":\"Track ").append(i).append("\",\"group_members\":[\"media_player.a\",\"media_player.b\"],")
+                        .append("\"entity_picture\":\"/api/media_player_proxy/media_player.entity_").append(i).append("?token=abcdef0123456789\",");
+                break;
+            case "climate":
+                sb.append("\"hvac_modes\":[\"off\",\"heat\",\"cool\",\"auto\"],\"preset_modes\":[\"eco\",\"away\",\"boost\",\"comfort\"],")
+                        .append("\"current_temperature\":21.5,\"temperature\":22,\"schedule\":{\"monday\":[{\"from\":\"06:00\",\"to\":\"22:00\",\"temp\":21}],")
+                        .append("\"tuesday\":[{\"from\":\"06:00\",\"to\":\"22:00\",\"temp\":21}]},");
+                break;
+            case "update":
+                sb.append("\"release_summary\":\"");
+                for (int s = 0; s < 20; s++) sb.append("Fixes and improvements. ");
+                sb.append("\",\"installed_version\":\"1.0.").append(i).append("\",");
+                break;
+            default:
+                sb.append("\"icon\":\"mdi:toggle-switch\",");
+                break;
+        }
+    }
+}
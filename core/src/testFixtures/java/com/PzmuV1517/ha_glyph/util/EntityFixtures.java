@@ -0,0 +1,39 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.PzmuV1517.ha_glyph.model.HomeAssistantEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Device lists shaped like a real instance, shared by the search tests and benchmarks. */
+public final class EntityFixtures {
+    private EntityFixtures() {
+    }
+
+    public static List<HomeAssistantEntity> generate(int count) {
+        String[] domains = {"light", "switch", "fan", "input_boolean", "automation"};
+        String[] rooms = {"Kitchen", "Living Room", "Bedroom", "Hallway", "Office", "Garage", "Attic"};
+        String[] things = {"Ceiling", "Lamp", "Strip", "Plug", "Heater", "Motion"};
+        List<HomeAssistantEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String room = rooms[i % rooms.length];
+            String thing = things[(i / rooms.length) % things.length];
+            String name = room + " " + thing + " " + (i / 42);
+            String id = domains[i % domains.length] + "." + name.toLowerCase().replace(' ', '_') + "_" + i;
+            entities.add(new HomeAssistantEntity(id, i % 2 == 0 ? "on" : "off", name, null));
+        }
+        return entities;
+    }
+
+    // The filter DeviceAdapter used before the index
+    public static List<HomeAssistantEntity> linearSearch(List<HomeAssistantEntity> devices, String query) {
+        List<HomeAssistantEntity> filtered = new ArrayList<>();
+        String q = query.toLowerCase();
+        for (HomeAssistantEntity e : devices) {
+            if (e.getFriendlyName().toLowerCase().contains(q) || e.getEntityId().toLowerCase().contains(q)) {
+                filtered.add(e);
+            }
+        }
+        return filtered;
+    }
+}
@@ -0,0 +1,96 @@
+package com.PzmuV1517.ha_glyph.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Sprite inputs shared by the parser tests and benchmarks, plus the original Gson DOM
+ * loader kept as the reference implementation.
+ */
+public final class SpriteFixtures {
+    public static final String[] BUNDLED = {"HA-on", "HA-off", "HA-err"};
+    private static final int[] CIRCLE_SHAPE = {7, 11, 15, 17, 19, 21, 21, 23, 23, 25, 25, 25, 25,
+            25, 25, 25, 23, 23, 21, 21, 19, 17, 15, 11, 7};
+
+    private SpriteFixtures() {
+    }
+
+    /** A sprite from the app's assets; the relative default works from both app/ and benchmark/. */
+    public static String bundled(String name) throws IOException {
+        String spritesDir = System.getProperty("haglyph.spritesDir", "../app/src/main/assets/sprites");
+        File file = new File(spritesDir, name + ".json");
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /** A 25x25 sprite in the bundled format with {@code frames} random frames. */
+    public static String animated(int frames) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder(frames * 60000);
+        json.append("{\"version\":\"1.0\",\"dimensions\":{\"width\":25,\"height\":25},\"shape\":[");
+        for (int i = 0; i < CIRCLE_SHAPE.length; i++) {
+            if (i > 0) json.append(',');
+            json.append(CIRCLE_SHAPE[i]);
+        }
+        json.append("],\"frames\":[");
+        for (int f = 0; f < frames; f++) {
+            if (f > 0) json.append(',');
+            json.append("{\"index\":").append(f).append(",\"duration\":100,\"pixels\":[");
+            boolean first = true;
+            for (int row = 0; row < 25; row++) {
+                int start = (25 - CIRCLE_SHAPE[row]) / 2;
+                for (int col = start; col < start + CIRCLE_SHAPE[row]; col++) {
+                    if (!first) json.append(',');
+                    first = false;
+                    json.append("{\"index\":\"").append(row).append('-').append(col)
+                            .append("\",\"row\":null,\"col\":null,\"opacity\":")
+                            .append(random.nextInt(3) == 0 ? 255 : 0).append('}');
+                }
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /** The pre-streaming loader: full Gson tree, String.split per pixel. */
+    public static SpriteData parseWithGsonTree(Gson gson, String jsonString) {
+        JsonObject spriteData = gson.fromJson(jsonString, JsonObject.class);
+        JsonObject dimensions = spriteData.getAsJsonObject("dimensions");
+        int width = dimensions.get("width").getAsInt();
+        int height = dimensions.get("height").getAsInt();
+
+        JsonArray shapeArray = spriteData.getAsJsonArray("shape");
+        int[] shape = new int[height];
+        for (int i = 0; i < height; i++) {
+            shape[i] = shapeArray.get(i).getAsInt();
+        }
+
+        JsonArray frames = spriteData.getAsJsonArray("frames");
+        int[] durations = new int[frames.size()];
+        byte[] pixels = new byte[frames.size() * width * height];
+        for (int f = 0; f < frames.size(); f++) {
+            JsonObject frame = frames.get(f).getAsJsonObject();
+            durations[f] = frame.get("duration").getAsInt();
+            for (JsonElement pixelElement : frame.getAsJsonArray("pixels")) {
+                JsonObject pixel = pixelElement.getAsJsonObject();
+                int brightness = SpriteData.opacityToBrightness(pixel.get("opacity").getAsDouble());
+                String[] coords = pixel.get("index").getAsString().split("-");
+                if (brightness == 0 || coords.length != 2) continue;
+                int row = Integer.parseInt(coords[0]);
+                int col = Integer.parseInt(coords[1]);
+                if (row >= 0 && row < height && col >= 0 && col < width) {
+                    pixels[(f * height + row) * width + col] = (byte) brightness;
+                }
+            }
+        }
+        return new SpriteData(width, height, shape, durations, pixels);
+    }
+}